@@ -0,0 +1,76 @@
+package de.kaktushose.discord.reactionwaiter.benchmark;
+
+import de.kaktushose.discord.reactionwaiter.EmoteType;
+import de.kaktushose.discord.reactionwaiter.ReactionListener;
+import de.kaktushose.discord.reactionwaiter.ReactionWaiter;
+import net.dv8tion.jda.api.events.message.guild.react.GuildMessageReactionAddEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link ReactionListener#onGuildMessageReactionAdd(GuildMessageReactionAddEvent)} with a growing amount of
+ * registered waiters. Run it with {@code -prof gc} to see the allocation rate per dispatched event.
+ *
+ * @author Kaktushose
+ * @version 3.0.0
+ * @since 3.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class DispatchBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int waiters;
+    private ReactionListener listener;
+    private GuildMessageReactionAddEvent hit;
+    private GuildMessageReactionAddEvent wrongEmote;
+    private GuildMessageReactionAddEvent unknownMessage;
+    private Blackhole blackhole;
+
+    @Setup
+    public void setup(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        listener = Stubs.listener(waiters);
+        for (long i = 1; i <= waiters; i++) {
+            new ReactionWaiter(Stubs.message(i), EmoteType.THUMBSUP.unicode).using(listener).onEvent(this::consume);
+        }
+        hit = Stubs.event(waiters / 2, EmoteType.THUMBSUP.unicode);
+        wrongEmote = Stubs.event(waiters / 2, EmoteType.THUMBSDOWN.unicode);
+        unknownMessage = Stubs.event(waiters + 1L, EmoteType.THUMBSUP.unicode);
+    }
+
+    @Benchmark
+    public void matchingReaction() {
+        listener.onGuildMessageReactionAdd(hit);
+    }
+
+    @Benchmark
+    public void wrongEmote() {
+        listener.onGuildMessageReactionAdd(wrongEmote);
+    }
+
+    @Benchmark
+    public void unknownMessage() {
+        listener.onGuildMessageReactionAdd(unknownMessage);
+    }
+
+    private void consume(Object event) {
+        blackhole.consume(event);
+    }
+}
@@ -0,0 +1,56 @@
+package de.kaktushose.discord.reactionwaiter.benchmark;
+
+import de.kaktushose.discord.reactionwaiter.EmoteType;
+import de.kaktushose.discord.reactionwaiter.ReactionListener;
+import de.kaktushose.discord.reactionwaiter.ReactionWaiter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures scheduling and cancelling waiter expiry. {@link #schedule()} keeps every timeout pending, so it also shows
+ * how the expiry engine behaves with millions of outstanding timeouts.
+ *
+ * @author Kaktushose
+ * @version 3.0.0
+ * @since 3.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ExpiryBenchmark {
+
+    private ReactionListener listener;
+    private ReactionWaiter waiter;
+
+    @Setup
+    public void setup() {
+        listener = Stubs.listener();
+        waiter = new ReactionWaiter(Stubs.message(1), EmoteType.THUMBSUP.unicode).using(listener);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public ReactionWaiter schedule() {
+        return new ReactionWaiter(EmoteType.THUMBSUP.unicode).using(listener).stopWaitingAfter(1, TimeUnit.HOURS);
+    }
+
+    @Benchmark
+    public ReactionWaiter scheduleAndCancel() {
+        return waiter.onEvent(event -> {
+        }, 1, TimeUnit.HOURS).stopWaiting(false);
+    }
+}
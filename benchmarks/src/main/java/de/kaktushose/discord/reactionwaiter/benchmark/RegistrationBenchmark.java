@@ -0,0 +1,97 @@
+package de.kaktushose.discord.reactionwaiter.benchmark;
+
+import de.kaktushose.discord.reactionwaiter.EmoteType;
+import de.kaktushose.discord.reactionwaiter.ReactionListener;
+import de.kaktushose.discord.reactionwaiter.ReactionWaiter;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.events.message.guild.react.GuildMessageReactionAddEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures concurrent {@link ReactionWaiter#onEvent(java.util.function.Consumer)} and
+ * {@link ReactionWaiter#stopWaiting(boolean)} churn, alone and while reactions are dispatched at the same time.
+ *
+ * @author Kaktushose
+ * @version 3.0.0
+ * @since 3.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RegistrationBenchmark {
+
+    private static final int MESSAGES = 1024;
+    private static final AtomicLong ids = new AtomicLong();
+    private ReactionListener listener;
+    private GuildMessageReactionAddEvent event;
+
+    @Setup
+    public void setup() {
+        listener = Stubs.listener();
+        event = Stubs.event(1, EmoteType.THUMBSUP.unicode);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public ReactionWaiter registerAndStop(Messages messages) {
+        return registerAndStop(messages.next());
+    }
+
+    @Benchmark
+    @Group("churnWhileDispatching")
+    @GroupThreads(3)
+    public ReactionWaiter churn(Messages messages) {
+        return registerAndStop(messages.next());
+    }
+
+    @Benchmark
+    @Group("churnWhileDispatching")
+    @GroupThreads(1)
+    public void dispatch() {
+        listener.onGuildMessageReactionAdd(event);
+    }
+
+    private ReactionWaiter registerAndStop(Message message) {
+        return new ReactionWaiter(message, EmoteType.THUMBSUP.unicode).using(listener).onEvent(reactionEvent -> {
+        }).stopWaiting(false);
+    }
+
+    /**
+     * A ring of messages per thread, so that creating the stubs isn't part of the measurement.
+     */
+    @State(Scope.Thread)
+    public static class Messages {
+
+        private final Message[] messages = new Message[MESSAGES];
+        private int index;
+
+        @Setup
+        public void setup() {
+            for (int i = 0; i < MESSAGES; i++) {
+                messages[i] = Stubs.message(ids.incrementAndGet());
+            }
+        }
+
+        Message next() {
+            return messages[index++ & (MESSAGES - 1)];
+        }
+    }
+}
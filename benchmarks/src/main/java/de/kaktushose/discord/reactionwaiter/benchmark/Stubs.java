@@ -0,0 +1,119 @@
+package de.kaktushose.discord.reactionwaiter.benchmark;
+
+import de.kaktushose.discord.reactionwaiter.ReactionListener;
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.MessageReaction;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.events.message.guild.react.GuildMessageReactionAddEvent;
+import net.dv8tion.jda.api.requests.RestAction;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Executors;
+
+/**
+ * Offline stand-ins for the JDA entities the benchmarks need. All of them are dynamic proxies that only answer the
+ * few methods the library calls and never touch the network.
+ *
+ * @author Kaktushose
+ * @version 3.0.0
+ * @since 3.0.0
+ */
+final class Stubs {
+
+    static final long GUILD_ID = 1L;
+    static final long CHANNEL_ID = 2L;
+    static final long USER_ID = 3L;
+    static final JDA JDA = stub(JDA.class, 0L);
+    static final Guild GUILD = stub(Guild.class, GUILD_ID);
+    static final TextChannel CHANNEL = stub(TextChannel.class, CHANNEL_ID);
+    static final User USER = stub(User.class, USER_ID);
+    static final Member MEMBER = stub(Member.class, USER_ID);
+
+    private Stubs() {
+    }
+
+    /**
+     * Creates a listener that runs on a daemon thread and doesn't expire or clean up anything by itself.
+     *
+     * @return a new {@link ReactionListener}
+     */
+    static ReactionListener listener() {
+        return listener(4096);
+    }
+
+    /**
+     * Creates a listener like {@link #listener()} whose Bloom filter is sized for the given amount of messages.
+     *
+     * @param expectedMessages the amount of messages the benchmark registers waiters for
+     * @return a new {@link ReactionListener}
+     */
+    static ReactionListener listener(int expectedMessages) {
+        return ReactionListener.builder()
+                .setExpectedMessages(expectedMessages)
+                .setScheduler(Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "benchmark-scheduler");
+                    thread.setDaemon(true);
+                    return thread;
+                }))
+                .setAutoRemove(false)
+                .setRemoveReactions(false)
+                .build();
+    }
+
+    static Message message(long messageId) {
+        return stub(Message.class, messageId);
+    }
+
+    static GuildMessageReactionAddEvent event(long messageId, String emote) {
+        MessageReaction reaction = new MessageReaction(CHANNEL, MessageReaction.ReactionEmote.fromUnicode(emote, JDA), messageId, false, 1);
+        return new GuildMessageReactionAddEvent(JDA, 0, MEMBER, reaction);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, long id) {
+        return (T) Proxy.newProxyInstance(Stubs.class.getClassLoader(), new Class[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getIdLong":
+                    return id;
+                case "getId":
+                    return Long.toUnsignedString(id);
+                case "getJDA":
+                    return JDA;
+                case "getUser":
+                    return USER;
+                case "getGuild":
+                case "getGuildById":
+                    return GUILD;
+                case "getChannel":
+                case "getTextChannel":
+                case "getTextChannelById":
+                    return CHANNEL;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return type.getSimpleName() + ":" + id;
+                default:
+                    break;
+            }
+            if (RestAction.class.isAssignableFrom(method.getReturnType())) {
+                return stub(method.getReturnType(), 0L);
+            }
+            if (method.getReturnType() == long.class) {
+                return 0L;
+            }
+            if (method.getReturnType() == int.class) {
+                return 0;
+            }
+            if (method.getReturnType() == boolean.class) {
+                return false;
+            }
+            return null;
+        });
+    }
+}
@@ -0,0 +1,166 @@
+package de.kaktushose.discord.reactionwaiter;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands matched {@link ReactionEvent}s over to an {@link Executor} instead of calling the consumers on the JDA event
+ * thread. Every waiter gets its own bounded mailbox that is drained by at most one task at a time, thus the events of
+ * one waiter are always processed in the order they were received, while different waiters run in parallel. A
+ * mailbox is bound to the dispatcher that offered the last event, so replacing the executor of a listener also moves
+ * the mailboxes that are still being drained.
+ *
+ * @author Kaktushose
+ * @version 3.0.0
+ * @since 3.0.0
+ */
+final class AsyncDispatcher {
+
+    // the maximum amount of events a mailbox processes before it yields the executor thread
+    private static final int BATCH_SIZE = 64;
+    private final ReactionListener listener;
+    private final Executor executor;
+    private final int capacity;
+    private final OverflowPolicy policy;
+    // the mailboxes that have events queued or are being drained
+    private final AtomicInteger active = new AtomicInteger();
+
+    AsyncDispatcher(ReactionListener listener, Executor executor, int capacity, OverflowPolicy policy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The queue capacity must be at least one!");
+        }
+        this.listener = listener;
+        this.executor = executor;
+        this.capacity = capacity;
+        this.policy = policy;
+    }
+
+    Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Whether no mailbox has any events queued or is being drained right now.
+     *
+     * @return {@code true} if all events were delivered
+     */
+    boolean isIdle() {
+        return active.get() == 0;
+    }
+
+    /**
+     * Queues the event for the given waiter.
+     *
+     * @param waiter the waiter the event matched
+     * @param event  the event to deliver
+     */
+    void dispatch(ReactionWaiter waiter, ReactionEvent event) {
+        waiter.getMailbox().offer(this, event);
+    }
+
+    /**
+     * The event queue of a single {@link ReactionWaiter}.
+     */
+    static final class Mailbox implements Runnable {
+
+        private final ReactionWaiter waiter;
+        private final Queue<ReactionEvent> queue = new ArrayDeque<>();
+        // the dispatcher of the last offer, only changed under the monitor
+        private volatile AsyncDispatcher dispatcher;
+        private boolean scheduled;
+
+        Mailbox(ReactionWaiter waiter) {
+            this.waiter = waiter;
+        }
+
+        private void offer(AsyncDispatcher dispatcher, ReactionEvent event) {
+            synchronized (this) {
+                if (queue.size() >= dispatcher.capacity) {
+                    switch (dispatcher.policy) {
+                        case DROP_NEWEST:
+                            return;
+                        case DROP_OLDEST:
+                            queue.poll();
+                            break;
+                        case BLOCK:
+                            while (queue.size() >= dispatcher.capacity) {
+                                try {
+                                    wait();
+                                } catch (InterruptedException e) {
+                                    Thread.currentThread().interrupt();
+                                    return;
+                                }
+                            }
+                            break;
+                    }
+                }
+                queue.add(event);
+                if (scheduled) {
+                    if (this.dispatcher != dispatcher) {
+                        // the executor got replaced, the running drain continues on the new one after its batch
+                        dispatcher.active.incrementAndGet();
+                        this.dispatcher.active.decrementAndGet();
+                        this.dispatcher = dispatcher;
+                    }
+                    return;
+                }
+                scheduled = true;
+                this.dispatcher = dispatcher;
+                dispatcher.active.incrementAndGet();
+            }
+            submit();
+        }
+
+        private void submit() {
+            while (true) {
+                try {
+                    dispatcher.executor.execute(this);
+                    return;
+                } catch (RejectedExecutionException e) {
+                    // the executor is saturated or shut down, drain on the calling thread to not lose the events and
+                    // retry after every batch, in a loop so a shut down executor can't grow the stack
+                    if (!drain()) {
+                        return;
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            if (drain()) {
+                submit();
+            }
+        }
+
+        /**
+         * Delivers up to one batch of events.
+         *
+         * @return {@code false} if the mailbox ran empty, {@code true} if it has to be drained again
+         */
+        private boolean drain() {
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                ReactionEvent event;
+                synchronized (this) {
+                    event = queue.poll();
+                    if (event == null) {
+                        scheduled = false;
+                        dispatcher.active.decrementAndGet();
+                        return false;
+                    }
+                    notifyAll();
+                }
+                try {
+                    dispatcher.listener.invoke(waiter, event);
+                } catch (Throwable t) {
+                    Thread thread = Thread.currentThread();
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+                }
+            }
+            return true;
+        }
+    }
+}
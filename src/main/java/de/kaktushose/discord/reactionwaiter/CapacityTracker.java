@@ -0,0 +1,286 @@
+package de.kaktushose.discord.reactionwaiter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Enforces the capacity limits of a {@link ReactionListener}. Every waiter is linked into up to three doubly linked
+ * lists: the global one, the one of its guild and the one of its member. The lists are ordered by registration, so
+ * the oldest waiter is always the head of a list. Registering and removing a waiter are O(1), no matter how many
+ * waiters are registered.
+ *
+ * <p>{@link EvictionPolicy#LEAST_RECENTLY_MATCHED} approximates the recency with the CLOCK algorithm: a match only sets
+ * a flag per list on the node, without any lock. On eviction a flagged head loses its flag and moves to the tail, so
+ * it gets a second chance, and the first unflagged head gets evicted. This amortizes to O(1) per match.
+ *
+ * <p>Registering and removing share a single lock. They only relink a few nodes, which is cheap compared to the
+ * registration itself, and a single lock keeps the three lists consistent with each other.
+ *
+ * @author Kaktushose
+ * @version 3.0.0
+ * @since 3.0.0
+ */
+final class CapacityTracker {
+
+    private static final int GLOBAL = 0;
+    private static final int GUILD = 1;
+    private static final int MEMBER = 2;
+    private static final int REFERENCED = 1 << GLOBAL | 1 << GUILD | 1 << MEMBER;
+    private static final AtomicIntegerFieldUpdater<Entry> referenced = AtomicIntegerFieldUpdater.newUpdater(Entry.class, "referenced");
+    private final int[] limits;
+    private final EvictionPolicy policy;
+    private final Scope global = new Scope(GLOBAL, 0, 0);
+    private final LongObjectMap<Scope> guilds = new LongObjectMap<>();
+    private final LongObjectMap<LongObjectMap<Scope>> members = new LongObjectMap<>();
+
+    /**
+     * Creates a new tracker. A limit of {@code 0} means unlimited.
+     *
+     * @param globalLimit the maximum amount of waiters
+     * @param guildLimit  the maximum amount of waiters per guild
+     * @param memberLimit the maximum amount of waiters per member
+     * @param policy      the {@link EvictionPolicy} to apply
+     * @throws IllegalArgumentException if a limit is negative
+     */
+    CapacityTracker(int globalLimit, int guildLimit, int memberLimit, EvictionPolicy policy) {
+        if (globalLimit < 0 || guildLimit < 0 || memberLimit < 0) {
+            throw new IllegalArgumentException("The capacity limits must not be negative!");
+        }
+        this.limits = new int[]{globalLimit, guildLimit, memberLimit};
+        this.policy = policy;
+    }
+
+    /**
+     * Starts tracking a registered waiter. If a limit is reached, either the waiter gets rejected or the waiters to
+     * evict are unlinked and added to the given list. A waiter that is already tracked or not registered anymore is
+     * ignored.
+     *
+     * @param waiter  the waiter to track
+     * @param evicted the list to add the evicted waiters to
+     * @return {@code false} if the waiter got rejected
+     */
+    synchronized boolean add(ReactionWaiter waiter, List<ReactionWaiter> evicted) {
+        // unregister removes the entry after marking the waiter, so a waiter checked here can't leak
+        if (waiter.getCapacityEntry() != null || !waiter.isRegistered()) {
+            return true;
+        }
+        long guildId = waiter.getGuildIdLong() != 0 ? waiter.getGuildIdLong() : waiter.getFilter().getGuildId();
+        long userId = guildId == 0 ? 0 : waiter.getUserIdLong();
+        Scope[] scopes = {global, guildId == 0 ? null : guild(guildId), userId == 0 ? null : member(guildId, userId)};
+        if (policy == EvictionPolicy.REJECT) {
+            for (Scope scope : scopes) {
+                if (scope != null && isFull(scope)) {
+                    release(scopes);
+                    return false;
+                }
+            }
+        }
+        List<Entry> victims = new ArrayList<>(0);
+        for (Scope scope : scopes) {
+            while (scope != null && isFull(scope)) {
+                Entry victim = victimOf(scope);
+                unlink(victim);
+                victims.add(victim);
+                evicted.add(victim.waiter);
+            }
+        }
+        Entry entry = new Entry(waiter, scopes);
+        for (Scope scope : scopes) {
+            if (scope != null) {
+                scope.linkLast(entry);
+            }
+        }
+        waiter.setCapacityEntry(entry);
+        // released only now, otherwise a scope the new waiter gets linked into could be dropped in between
+        for (Entry victim : victims) {
+            release(victim.scopes);
+        }
+        return true;
+    }
+
+    /**
+     * Stops tracking a waiter. Does nothing if the waiter isn't tracked.
+     *
+     * @param waiter the waiter to remove
+     */
+    synchronized void remove(ReactionWaiter waiter) {
+        Entry entry = waiter.getCapacityEntry();
+        if (entry != null && entry.tracker() == this) {
+            unlink(entry);
+            release(entry.scopes);
+        }
+    }
+
+    /**
+     * Marks a waiter as matched. Only has an effect for {@link EvictionPolicy#LEAST_RECENTLY_MATCHED}. This doesn't
+     * take the lock, the lists are only reordered on eviction.
+     *
+     * @param waiter the waiter that matched a reaction
+     */
+    void touch(ReactionWaiter waiter) {
+        if (policy != EvictionPolicy.LEAST_RECENTLY_MATCHED) {
+            return;
+        }
+        Entry entry = waiter.getCapacityEntry();
+        // the read avoids writing the shared cache line again while the waiter keeps matching
+        if (entry != null && entry.tracker() == this && entry.referenced != REFERENCED) {
+            entry.referenced = REFERENCED;
+        }
+    }
+
+    // after one round every head lost its flag, so the loop ends even if the waiters keep matching meanwhile
+    private Entry victimOf(Scope scope) {
+        if (policy == EvictionPolicy.LEAST_RECENTLY_MATCHED) {
+            int flag = 1 << scope.level;
+            for (int i = scope.size; i > 0; i--) {
+                Entry head = scope.head;
+                if (!clear(head, flag)) {
+                    return head;
+                }
+                scope.unlink(head);
+                scope.linkLast(head);
+            }
+        }
+        return scope.head;
+    }
+
+    private static boolean clear(Entry entry, int flag) {
+        while (true) {
+            int current = entry.referenced;
+            if ((current & flag) == 0) {
+                return false;
+            }
+            if (referenced.compareAndSet(entry, current, current & ~flag)) {
+                return true;
+            }
+        }
+    }
+
+    private boolean isFull(Scope scope) {
+        int limit = limits[scope.level];
+        return limit != 0 && scope.size >= limit;
+    }
+
+    private void unlink(Entry entry) {
+        for (Scope scope : entry.scopes) {
+            if (scope != null) {
+                scope.unlink(entry);
+            }
+        }
+        entry.waiter.setCapacityEntry(null);
+    }
+
+    // empty guild and member scopes are dropped, so the maps only hold the guilds and members that have waiters
+    private void release(Scope[] scopes) {
+        Scope guild = scopes[GUILD];
+        if (guild != null && guild.size == 0 && guilds.get(guild.guildId) == guild) {
+            guilds.remove(guild.guildId);
+        }
+        Scope member = scopes[MEMBER];
+        if (member == null || member.size != 0) {
+            return;
+        }
+        LongObjectMap<Scope> guildMembers = members.get(member.guildId);
+        if (guildMembers != null && guildMembers.get(member.userId) == member) {
+            guildMembers.remove(member.userId);
+            if (guildMembers.isEmpty()) {
+                members.remove(member.guildId);
+            }
+        }
+    }
+
+    private Scope guild(long guildId) {
+        Scope scope = guilds.get(guildId);
+        if (scope == null) {
+            scope = new Scope(GUILD, guildId, 0);
+            guilds.put(guildId, scope);
+        }
+        return scope;
+    }
+
+    private Scope member(long guildId, long userId) {
+        LongObjectMap<Scope> guildMembers = members.get(guildId);
+        if (guildMembers == null) {
+            guildMembers = new LongObjectMap<>();
+            members.put(guildId, guildMembers);
+        }
+        Scope scope = guildMembers.get(userId);
+        if (scope == null) {
+            scope = new Scope(MEMBER, guildId, userId);
+            guildMembers.put(userId, scope);
+        }
+        return scope;
+    }
+
+    /**
+     * The node of a tracked waiter. It holds one pair of links per list, so the same node is part of all lists.
+     */
+    final class Entry {
+
+        private final ReactionWaiter waiter;
+        private final Scope[] scopes;
+        private final Entry[] previous = new Entry[3];
+        private final Entry[] next = new Entry[3];
+        // one flag per list, set by a match and cleared by the eviction of that list, not private for the updater
+        volatile int referenced;
+
+        private Entry(ReactionWaiter waiter, Scope[] scopes) {
+            this.waiter = waiter;
+            this.scopes = scopes;
+            // the registration counts as a match, so a new waiter isn't evicted before an older one that matched once
+            this.referenced = REFERENCED;
+        }
+
+        private CapacityTracker tracker() {
+            return CapacityTracker.this;
+        }
+    }
+
+    private static final class Scope {
+
+        private final int level;
+        private final long guildId;
+        private final long userId;
+        private Entry head;
+        private Entry tail;
+        private int size;
+
+        private Scope(int level, long guildId, long userId) {
+            this.level = level;
+            this.guildId = guildId;
+            this.userId = userId;
+        }
+
+        private void linkLast(Entry entry) {
+            Entry last = tail;
+            entry.previous[level] = last;
+            entry.next[level] = null;
+            if (last == null) {
+                head = entry;
+            } else {
+                last.next[level] = entry;
+            }
+            tail = entry;
+            size++;
+        }
+
+        private void unlink(Entry entry) {
+            Entry previous = entry.previous[level];
+            Entry next = entry.next[level];
+            if (previous == null) {
+                head = next;
+            } else {
+                previous.next[level] = next;
+            }
+            if (next == null) {
+                tail = previous;
+            } else {
+                next.previous[level] = previous;
+            }
+            entry.previous[level] = null;
+            entry.next[level] = null;
+            size--;
+        }
+    }
+}
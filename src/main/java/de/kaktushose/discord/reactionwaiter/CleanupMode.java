@@ -0,0 +1,25 @@
+package de.kaktushose.discord.reactionwaiter;
+
+/**
+ * Decides which reactions get removed from a message when its {@link ReactionWaiter} gets unregistered.
+ *
+ * @author Kaktushose
+ * @version 3.0.0
+ * @see ReactionListener#setCleanupMode(CleanupMode)
+ * @since 3.0.0
+ */
+
+public enum CleanupMode {
+
+    /**
+     * Removes all reactions of the message with a single request. This requires the {@code MESSAGE_MANAGE} permission.
+     */
+    ALL,
+
+    /**
+     * Only removes the reactions the bot added itself for the emotes of the waiter. This needs one request per emote,
+     * but doesn't require any permission.
+     */
+    OWN
+
+}
@@ -0,0 +1,86 @@
+package de.kaktushose.discord.reactionwaiter;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A lock-free counting Bloom filter for {@code long} keys. Unlike a plain Bloom filter it supports removals, thus it
+ * can track a set that changes over time. {@link #mightContain(long)} never returns a false negative, false positives
+ * are possible but rare as long as the amount of keys stays well below the amount of counters.
+ *
+ * <p>The counters are 8 bits wide and packed into an {@link AtomicIntegerArray}. A counter that reaches 255 sticks
+ * there, so an overflow can only cause false positives, never false negatives.
+ *
+ * @author Kaktushose
+ * @version 3.0.0
+ * @since 3.0.0
+ */
+final class CountingBloomFilter {
+
+    private static final int HASHES = 3;
+    private static final int SATURATED = 0xFF;
+    private final AtomicIntegerArray counters;
+    private final int mask;
+
+    /**
+     * Creates a new filter.
+     *
+     * @param size the amount of counters, will be rounded up to a power of two. Every counter needs one byte
+     */
+    CountingBloomFilter(int size) {
+        int capacity = Integer.highestOneBit(Math.max(4, size) - 1) << 1;
+        counters = new AtomicIntegerArray(capacity >>> 2);
+        mask = capacity - 1;
+    }
+
+    void add(long key) {
+        long hash = mix(key);
+        int step = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            update((int) hash + i * step & mask, 1);
+        }
+    }
+
+    void remove(long key) {
+        long hash = mix(key);
+        int step = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            update((int) hash + i * step & mask, -1);
+        }
+    }
+
+    boolean mightContain(long key) {
+        long hash = mix(key);
+        int step = (int) (hash >>> 32) | 1;
+        for (int i = 0; i < HASHES; i++) {
+            if (counter((int) hash + i * step & mask) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int counter(int index) {
+        return counters.get(index >>> 2) >>> ((index & 3) << 3) & SATURATED;
+    }
+
+    private void update(int index, int delta) {
+        int word = index >>> 2;
+        int shift = (index & 3) << 3;
+        while (true) {
+            int current = counters.get(word);
+            int count = current >>> shift & SATURATED;
+            if (count == SATURATED || (delta < 0 && count == 0)) {
+                return;
+            }
+            if (counters.compareAndSet(word, current, current + (delta << shift))) {
+                return;
+            }
+        }
+    }
+
+    private static long mix(long key) {
+        key = (key ^ (key >>> 33)) * 0xFF51AFD7ED558CCDL;
+        key = (key ^ (key >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return key ^ (key >>> 33);
+    }
+}
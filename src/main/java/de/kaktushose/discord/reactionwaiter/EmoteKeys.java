@@ -0,0 +1,112 @@
+package de.kaktushose.discord.reactionwaiter;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Emote;
+import net.dv8tion.jda.api.entities.MessageReaction;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Normalizes emotes to the keys the waiters are indexed by. A unicode emote is its own key, a custom emote is keyed by
+ * its id, thus two custom emotes with the same name never get mixed up and renaming a custom emote doesn't break any
+ * waiter. Custom emotes can be passed in any of the formats Discord uses, e.g. {@code <:name:id>}, {@code <a:name:id>},
+ * {@code name:id} or just the id. A custom emote passed by its name alone is rejected, since reactions are matched by id.
+ *
+ * <p>Every key is interned once when a waiter gets created. Incoming reactions are resolved to the interned instance,
+ * so the index lookups compare references before they compare characters, and a reaction whose emote was never
+ * registered by any waiter is rejected without touching the index at all. The pool only grows by the distinct emotes
+ * that are used, which is a small and bounded set in practice.
+ *
+ * @author Kaktushose
+ * @version 3.0.0
+ * @since 3.0.0
+ */
+final class EmoteKeys {
+
+    private static final Map<String, String> keys = new ConcurrentHashMap<>();
+
+    private EmoteKeys() {
+    }
+
+    /**
+     * Normalizes and interns the given emote.
+     *
+     * @param emote the unicode of the emote or the custom emote in any supported format
+     * @return the interned key of the emote
+     * @throws IllegalArgumentException if the emote is neither unicode nor contains the id of a custom emote
+     */
+    static String register(String emote) {
+        String key = normalize(emote);
+        // every unicode emote contains a non ascii character, anything else must be a custom emote without its id
+        if (!isCustom(key) && isAscii(key)) {
+            throw new IllegalArgumentException("Custom emotes must contain their id, e.g. <:name:id>, but got: " + emote);
+        }
+        String existing = keys.putIfAbsent(key, key);
+        return existing == null ? key : existing;
+    }
+
+    /**
+     * Resolves the emote of a reaction to its interned key.
+     *
+     * @param reactionEmote the emote of the reaction
+     * @return the interned key or {@code null} if no waiter ever listened for the emote
+     */
+    static String lookup(MessageReaction.ReactionEmote reactionEmote) {
+        return keys.get(reactionEmote.isEmote() ? reactionEmote.getId() : reactionEmote.getName());
+    }
+
+    /**
+     * Whether the given key belongs to a custom emote.
+     *
+     * @param key the key of the emote
+     * @return {@code true} if the key is the id of a custom emote
+     */
+    static boolean isCustom(String key) {
+        // no unicode emote consists of digits only, even the keycaps carry a combining mark
+        for (int i = 0; i < key.length(); i++) {
+            if (!Character.isDigit(key.charAt(i))) {
+                return false;
+            }
+        }
+        return !key.isEmpty();
+    }
+
+    private static boolean isAscii(String key) {
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Resolves the custom emote of the given key from the JDA cache.
+     *
+     * @param jda the JDA to resolve the emote with
+     * @param key the key of a custom emote
+     * @return the {@code Emote} or {@code null} if it isn't cached
+     */
+    static Emote resolve(JDA jda, String key) {
+        return jda.getEmoteById(Long.parseLong(key));
+    }
+
+    /**
+     * Normalizes the given emote without interning it.
+     *
+     * @param emote the unicode of the emote or the custom emote in any supported format
+     * @return the key of the emote
+     */
+    static String normalize(String emote) {
+        String value = emote.trim();
+        if (value.startsWith("<") && value.endsWith(">")) {
+            value = value.substring(1, value.length() - 1);
+        }
+        int separator = value.lastIndexOf(':');
+        if (separator != -1 && isCustom(value.substring(separator + 1))) {
+            return value.substring(separator + 1);
+        }
+        return value;
+    }
+}
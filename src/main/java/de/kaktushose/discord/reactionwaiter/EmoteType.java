@@ -4,7 +4,7 @@ package de.kaktushose.discord.reactionwaiter;
  * Some emotes that might be frequently used.
  *
  * @author Kaktushose
- * @version 2.0.0
+ * @version 3.0.0
  * @since 1.0.0
  */
 
@@ -104,7 +104,19 @@ public enum EmoteType {
      * Triangular flag on post <br>
      * code point: U+1F6A9
      */
-    FLAG("\uD83D\uDEA9");
+    FLAG("\uD83D\uDEA9"),
+
+    /**
+     * Reverse button <br>
+     * code point: U+25C0 U+FE0F
+     */
+    ARROW_BACKWARD("\u25C0\uFE0F"),
+
+    /**
+     * Play button <br>
+     * code point: U+25B6 U+FE0F
+     */
+    ARROW_FORWARD("\u25B6\uFE0F");
 
     /**
      * the escaped code point of the emote
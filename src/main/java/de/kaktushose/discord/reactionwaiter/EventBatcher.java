@@ -0,0 +1,139 @@
+package de.kaktushose.discord.reactionwaiter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Buffers the matched {@link ReactionEvent}s of one {@link ReactionWaiter} and delivers them as batches. A batch is
+ * delivered as soon as it reaches the maximum size or the time window since its first event elapsed, whichever comes
+ * first.
+ *
+ * <p>Full batches are delivered on the thread that added the last event, batches that are flushed by the time window
+ * are delivered on the dispatch executor of the listener. Batches never overlap and are always delivered in the order
+ * they were filled, regardless of the thread they are delivered on. A batch counts as in flight at the listener from
+ * its first event until it got delivered, thus a {@link ReactionListener#shutdown(boolean, long, TimeUnit) shutdown}
+ * waits for the open time windows as well.
+ *
+ * @author Kaktushose
+ * @version 3.0.0
+ * @since 3.0.0
+ */
+final class EventBatcher implements Consumer<ReactionEvent> {
+
+    private final Consumer<List<ReactionEvent>> consumer;
+    private final int maxSize;
+    private final long windowNanos;
+    private final ReactionListener listener;
+    private final Queue<List<ReactionEvent>> ready = new ArrayDeque<>();
+    private List<ReactionEvent> buffer;
+    private Future<?> flushTask;
+    private boolean delivering;
+
+    /**
+     * Creates a new batcher.
+     *
+     * @param consumer  the callback that receives the batches
+     * @param maxSize   the maximum amount of events per batch
+     * @param window    the maximum time to wait for a batch to fill up
+     * @param timeUnit  the time unit of the window parameter
+     * @param listener  the listener whose scheduler closes the time windows
+     * @throws IllegalArgumentException if the maximum size is less than one
+     */
+    EventBatcher(Consumer<List<ReactionEvent>> consumer, int maxSize, long window, TimeUnit timeUnit, ReactionListener listener) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("The batch size must be at least one!");
+        }
+        this.consumer = consumer;
+        this.maxSize = maxSize;
+        this.windowNanos = timeUnit.toNanos(window);
+        this.listener = listener;
+    }
+
+    @Override
+    public void accept(ReactionEvent event) {
+        synchronized (this) {
+            if (buffer == null) {
+                List<ReactionEvent> batch = new ArrayList<>(Math.min(maxSize, 64));
+                buffer = batch;
+                listener.batchOpened();
+                try {
+                    flushTask = listener.getScheduler().schedule(() -> flushAsync(batch), windowNanos, TimeUnit.NANOSECONDS);
+                } catch (RejectedExecutionException e) {
+                    // the scheduler got shut down, nothing would close the window, so deliver the batch right away
+                    flushTask = null;
+                }
+            }
+            buffer.add(event);
+            if (flushTask != null) {
+                if (buffer.size() < maxSize) {
+                    return;
+                }
+                flushTask.cancel(false);
+            }
+            complete();
+        }
+        deliver();
+    }
+
+    private void flushAsync(List<ReactionEvent> batch) {
+        // the scheduler also advances the timing wheel, so don't run the consumer on it
+        try {
+            listener.getDeliveryExecutor().execute(() -> flush(batch));
+        } catch (RejectedExecutionException e) {
+            flush(batch);
+        }
+    }
+
+    // a window task that lost the race against a full batch must not flush the next batch early
+    private void flush(List<ReactionEvent> batch) {
+        synchronized (this) {
+            if (buffer != batch) {
+                return;
+            }
+            complete();
+        }
+        deliver();
+    }
+
+    // must hold the monitor
+    private void complete() {
+        ready.add(buffer);
+        buffer = null;
+        flushTask = null;
+    }
+
+    private void deliver() {
+        synchronized (this) {
+            if (delivering) {
+                // the thread that is already delivering will pick up this batch as well
+                return;
+            }
+            delivering = true;
+        }
+        while (true) {
+            List<ReactionEvent> batch;
+            synchronized (this) {
+                batch = ready.poll();
+                if (batch == null) {
+                    delivering = false;
+                    return;
+                }
+            }
+            try {
+                consumer.accept(Collections.unmodifiableList(batch));
+            } catch (Throwable t) {
+                Thread thread = Thread.currentThread();
+                thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+            } finally {
+                listener.batchDelivered();
+            }
+        }
+    }
+}
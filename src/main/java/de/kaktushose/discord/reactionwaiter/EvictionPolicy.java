@@ -0,0 +1,33 @@
+package de.kaktushose.discord.reactionwaiter;
+
+/**
+ * Decides what happens if a {@link ReactionWaiter} gets registered while one of the capacity limits of its
+ * {@link ReactionListener} is reached.
+ *
+ * @author Kaktushose
+ * @version 3.0.0
+ * @see ReactionListener#setCapacity(int, int, int, EvictionPolicy)
+ * @since 3.0.0
+ */
+
+public enum EvictionPolicy {
+
+    /**
+     * Rejects the new waiter, the registered waiters stay untouched.
+     */
+    REJECT,
+
+    /**
+     * Evicts the waiter that was registered first to make room for the new one.
+     */
+    OLDEST,
+
+    /**
+     * Evicts a waiter that didn't match a reaction for a long time to make room for the new one. Waiters that never
+     * matched count as matched when they got registered. The recency is approximated, so matching doesn't need a
+     * lock: a waiter that matched since the last eviction gets skipped once, the oldest waiter that didn't gets
+     * evicted.
+     */
+    LEAST_RECENTLY_MATCHED
+
+}
@@ -0,0 +1,245 @@
+package de.kaktushose.discord.reactionwaiter;
+
+import javax.annotation.Nonnull;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * A {@link WaiterStore} that appends every change to a single binary file. Saving or removing a waiter only appends a
+ * few bytes to a buffer, which gets written to the file on {@link #flush()}. Thus changes that weren't flushed yet are
+ * lost if the process crashes.
+ *
+ * <p>The store keeps the records that are still alive in memory. When the store gets opened, the file is read once and
+ * rewritten with only these records. While the store is open, {@link #flush()} rewrites the file the same way once the
+ * replaced and removed records outnumber half of the live ones, so the file doesn't grow forever in a long running
+ * process either. A record that was cut off by a crash is ignored. The file starts with a format version,
+ * a file with an unknown version is rejected.
+ *
+ * @author Kaktushose
+ * @version 3.0.0
+ * @since 3.0.0
+ */
+
+public class FileWaiterStore implements WaiterStore {
+
+    private static final int MAGIC = 0x52575354;
+    private static final byte VERSION = 1;
+    private static final byte SAVE = 1;
+    private static final byte REMOVE = 2;
+    // small files aren't worth rewriting, no matter how many of their entries are dead
+    private static final int MIN_GARBAGE = 1024;
+    private final Path path;
+    private final AtomicLong ids = new AtomicLong();
+    private final LongObjectMap<WaiterRecord> records;
+    private DataOutputStream out;
+    // the entries in the file that don't describe a live record anymore
+    private int garbage;
+
+    /**
+     * Opens the store at the given file. The file gets created if it doesn't exist.
+     *
+     * @param path the file to store the waiters in
+     * @throws IOException if the file can't be read or written or has an unknown format
+     */
+    public FileWaiterStore(@Nonnull Path path) throws IOException {
+        this.path = path;
+        records = read();
+        compact();
+    }
+
+    @Override
+    public long nextId() {
+        return ids.incrementAndGet();
+    }
+
+    @Override
+    public synchronized void save(@Nonnull WaiterRecord record) {
+        try {
+            out.writeByte(SAVE);
+            write(out, record);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (records.put(record.getId(), record) != null) {
+            garbage++;
+        }
+    }
+
+    @Override
+    public synchronized void remove(long id) {
+        try {
+            out.writeByte(REMOVE);
+            out.writeLong(id);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        // the removal itself and the record it removes are both dead entries now
+        garbage += records.remove(id) == null ? 1 : 2;
+    }
+
+    /**
+     * {@inheritDoc}
+     * The records are passed from memory, the file isn't read again.
+     */
+    @Override
+    public void load(@Nonnull Consumer<WaiterRecord> consumer) {
+        List<WaiterRecord> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(records.size());
+            records.forEach(snapshot::add);
+        }
+        snapshot.forEach(consumer);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Rewrites the file with only the live records if the dead entries outnumber half of them.
+     */
+    @Override
+    public synchronized void flush() {
+        try {
+            if (garbage > Math.max(MIN_GARBAGE, records.size() / 2)) {
+                compact();
+            } else {
+                out.flush();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+
+    private LongObjectMap<WaiterRecord> read() throws IOException {
+        LongObjectMap<WaiterRecord> records = new LongObjectMap<>();
+        if (!Files.exists(path) || Files.size(path) == 0) {
+            return records;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a waiter store: " + path);
+            }
+            byte version = in.readByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported waiter store version " + version + ": " + path);
+            }
+            while (true) {
+                int type = in.read();
+                if (type == -1) {
+                    break;
+                }
+                if (type == SAVE) {
+                    WaiterRecord record = read(in);
+                    records.put(record.getId(), record);
+                    ids.accumulateAndGet(record.getId(), Math::max);
+                } else if (type == REMOVE) {
+                    records.remove(in.readLong());
+                } else {
+                    throw new IOException("Corrupt waiter store: " + path);
+                }
+            }
+        } catch (EOFException ignored) {
+            // the last record was cut off, everything before it is still valid
+        }
+        return records;
+    }
+
+    // the current file stays untouched and open until the compacted one is complete
+    private void compact() throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream compacted = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            compacted.writeInt(MAGIC);
+            compacted.writeByte(VERSION);
+            List<IOException> errors = new ArrayList<>(1);
+            records.forEach(record -> {
+                try {
+                    compacted.writeByte(SAVE);
+                    write(compacted, record);
+                } catch (IOException e) {
+                    errors.add(e);
+                }
+            });
+            if (!errors.isEmpty()) {
+                throw errors.get(0);
+            }
+        }
+        if (out != null) {
+            out.close();
+        }
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            garbage = 0;
+        } finally {
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path, StandardOpenOption.APPEND)));
+        }
+    }
+
+    private static void write(DataOutputStream out, WaiterRecord record) throws IOException {
+        out.writeLong(record.getId());
+        out.writeLong(record.getGuildIdLong());
+        out.writeLong(record.getChannelIdLong());
+        out.writeLong(record.getMessageIdLong());
+        out.writeLong(record.getUserIdLong());
+        out.writeLong(record.getExpiresAt());
+        writeString(out, record.getHandlerKey());
+        out.writeLong(record.getPayload());
+        out.writeInt(record.getEmotes().size());
+        for (String emote : record.getEmotes()) {
+            writeString(out, emote);
+        }
+    }
+
+    private static WaiterRecord read(DataInputStream in) throws IOException {
+        long id = in.readLong();
+        long guildId = in.readLong();
+        long channelId = in.readLong();
+        long messageId = in.readLong();
+        long userId = in.readLong();
+        long expiresAt = in.readLong();
+        String handlerKey = readString(in);
+        long payload = in.readLong();
+        int count = in.readInt();
+        if (count < 0) {
+            throw new IOException("Corrupt waiter store, negative emote count " + count);
+        }
+        List<String> emotes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            emotes.add(readString(in));
+        }
+        return new WaiterRecord(id, guildId, channelId, messageId, userId, emotes, expiresAt, handlerKey, payload);
+    }
+
+    // length prefixed, unlike writeUTF there is no limit of 65535 bytes that could fail in the middle of a record
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Corrupt waiter store, negative string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
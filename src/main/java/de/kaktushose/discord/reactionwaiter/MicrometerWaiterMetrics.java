@@ -0,0 +1,170 @@
+package de.kaktushose.discord.reactionwaiter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+
+import javax.annotation.Nonnull;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
+
+/**
+ * A {@link WaiterMetrics} implementation that records to a Micrometer {@code MeterRegistry}. Micrometer is an optional
+ * dependency of this library, you have to add {@code io.micrometer:micrometer-core} yourself to use this class.
+ * The following meters are registered, all of them prefixed with {@code reactionwaiter}:
+ * <ul>
+ *     <li>{@code waiters.live} gauge of the currently registered waiters</li>
+ *     <li>{@code waiters.registered}, {@code waiters.unregistered}, {@code waiters.expired} and
+ *     {@code waiters.evicted} counters</li>
+ *     <li>{@code prefilter} counters tagged with {@code result} {@code passed} or {@code rejected}</li>
+ *     <li>{@code ratelimited} counter of the events dropped by a {@link RateLimit}</li>
+ *     <li>{@code dispatch} timer with a percentile histogram, tagged with {@code result} {@code match} or {@code miss}</li>
+ *     <li>{@code consumer} timer of the consumer execution time</li>
+ *     <li>{@code cleanups} counters tagged with {@code state} {@code queued}, {@code completed} or {@code failed}</li>
+ *     <li>{@code cleanups.pending} gauge of the currently queued reaction removals</li>
+ * </ul>
+ *
+ * <p>One instance can be shared by several listeners, e.g. by the listeners of all shards. The gauges then report the
+ * sum of all listeners the instance is bound to. To report every listener on its own, create one instance per listener
+ * and tell them apart with common tags, e.g. {@code new MicrometerWaiterMetrics(registry, "shard", "0")}.
+ *
+ * @author Kaktushose
+ * @version 3.0.0
+ * @since 3.0.0
+ */
+
+public class MicrometerWaiterMetrics implements WaiterMetrics {
+
+    private static final String PREFIX = "reactionwaiter.";
+    private final MeterRegistry registry;
+    private final Tags tags;
+    // weak, the metrics shouldn't keep a discarded listener alive
+    private final Set<ReactionListener> listeners = Collections.newSetFromMap(new WeakHashMap<>());
+    private final Counter registered;
+    private final Counter unregistered;
+    private final Counter expired;
+    private final Counter evicted;
+    private final Counter prefilterPassed;
+    private final Counter prefilterRejected;
+    private final Counter rateLimited;
+    private final Timer matches;
+    private final Timer misses;
+    private final Timer consumer;
+    private final Counter cleanupsQueued;
+    private final Counter cleanupsCompleted;
+    private final Counter cleanupsFailed;
+
+    /**
+     * Creates a new instance that records to the given registry.
+     *
+     * @param registry the {@code MeterRegistry} to register the meters at
+     * @param tags     the tags to add to all meters, as key value pairs
+     * @throws IllegalArgumentException if the amount of tags is odd
+     */
+    public MicrometerWaiterMetrics(@Nonnull MeterRegistry registry, @Nonnull String... tags) {
+        if (tags.length % 2 != 0) {
+            throw new IllegalArgumentException("The tags must be key value pairs!");
+        }
+        this.registry = registry;
+        this.tags = Tags.of(tags);
+        registered = registry.counter(PREFIX + "waiters.registered", this.tags);
+        unregistered = registry.counter(PREFIX + "waiters.unregistered", this.tags);
+        expired = registry.counter(PREFIX + "waiters.expired", this.tags);
+        evicted = registry.counter(PREFIX + "waiters.evicted", this.tags);
+        prefilterPassed = registry.counter(PREFIX + "prefilter", this.tags.and("result", "passed"));
+        prefilterRejected = registry.counter(PREFIX + "prefilter", this.tags.and("result", "rejected"));
+        rateLimited = registry.counter(PREFIX + "ratelimited", this.tags);
+        matches = dispatchTimer("match");
+        misses = dispatchTimer("miss");
+        consumer = Timer.builder(PREFIX + "consumer").tags(this.tags).publishPercentileHistogram().register(registry);
+        cleanupsQueued = registry.counter(PREFIX + "cleanups", this.tags.and("state", "queued"));
+        cleanupsCompleted = registry.counter(PREFIX + "cleanups", this.tags.and("state", "completed"));
+        cleanupsFailed = registry.counter(PREFIX + "cleanups", this.tags.and("state", "failed"));
+        // registered once, a gauge with the same name and tags would be ignored by the registry for every other listener
+        Gauge.builder(PREFIX + "waiters.live", this, metrics -> metrics.sum(ReactionListener::getWaiterCount))
+                .tags(this.tags).register(registry);
+        Gauge.builder(PREFIX + "cleanups.pending", this, metrics -> metrics.sum(ReactionListener::getPendingCleanups))
+                .tags(this.tags).register(registry);
+    }
+
+    private Timer dispatchTimer(String result) {
+        return Timer.builder(PREFIX + "dispatch").tags(tags).tag("result", result).publishPercentileHistogram().register(registry);
+    }
+
+    private double sum(ToLongFunction<ReactionListener> function) {
+        long sum = 0;
+        synchronized (listeners) {
+            for (ReactionListener listener : listeners) {
+                sum += function.applyAsLong(listener);
+            }
+        }
+        return sum;
+    }
+
+    @Override
+    public void bindTo(@Nonnull ReactionListener listener) {
+        synchronized (listeners) {
+            listeners.add(listener);
+        }
+    }
+
+    @Override
+    public void onRegistered() {
+        registered.increment();
+    }
+
+    @Override
+    public void onUnregistered() {
+        unregistered.increment();
+    }
+
+    @Override
+    public void onExpired() {
+        expired.increment();
+    }
+
+    @Override
+    public void onEvicted() {
+        evicted.increment();
+    }
+
+    @Override
+    public void onPrefilter(boolean passed) {
+        (passed ? prefilterPassed : prefilterRejected).increment();
+    }
+
+    @Override
+    public void onRateLimited() {
+        rateLimited.increment();
+    }
+
+    @Override
+    public void onDispatch(long nanos, int matchCount) {
+        (matchCount > 0 ? matches : misses).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void onConsumerExecuted(long nanos) {
+        consumer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void onCleanupQueued() {
+        cleanupsQueued.increment();
+    }
+
+    @Override
+    public void onCleanupCompleted() {
+        cleanupsCompleted.increment();
+    }
+
+    @Override
+    public void onCleanupFailed() {
+        cleanupsFailed.increment();
+    }
+}
@@ -0,0 +1,30 @@
+package de.kaktushose.discord.reactionwaiter;
+
+/**
+ * Decides what happens to a {@link ReactionEvent} if asynchronous dispatch is enabled and the event queue of a
+ * {@link ReactionWaiter} is full.
+ *
+ * @author Kaktushose
+ * @version 3.0.0
+ * @see ReactionListener#setDispatchExecutor(java.util.concurrent.Executor, int, OverflowPolicy)
+ * @since 3.0.0
+ */
+
+public enum OverflowPolicy {
+
+    /**
+     * Blocks the JDA event thread until the waiter has processed enough events to accept the new one.
+     */
+    BLOCK,
+
+    /**
+     * Discards the new event.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Discards the oldest queued event to make room for the new one.
+     */
+    DROP_OLDEST
+
+}
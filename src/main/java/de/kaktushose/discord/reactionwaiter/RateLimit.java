@@ -0,0 +1,71 @@
+package de.kaktushose.discord.reactionwaiter;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Describes how many {@link ReactionEvent}s may be delivered within a period of time. The limit is enforced with a
+ * token bucket that holds up to {@code permits} tokens and refills one token every {@code period / permits}, thus
+ * short bursts up to the full amount of permits are allowed. Events that exceed the limit are dropped before a
+ * {@link ReactionEvent} gets created.
+ *
+ * <pre>{@code
+ * // at most 5 events every 10 seconds
+ * new RateLimit(5, 10, TimeUnit.SECONDS);
+ * }</pre>
+ *
+ * @author Kaktushose
+ * @version 3.0.0
+ * @see ReactionWaiter#setRateLimit(RateLimit)
+ * @see ReactionListener#setUserRateLimit(RateLimit)
+ * @see ReactionListener#setGuildRateLimit(RateLimit)
+ * @since 3.0.0
+ */
+
+public final class RateLimit {
+
+    private final int permits;
+    private final long periodNanos;
+
+    /**
+     * Creates a new rate limit.
+     *
+     * @param permits  the maximum amount of events within the period
+     * @param period   the period in which the permits are refilled completely
+     * @param timeUnit the time unit of the period parameter
+     * @throws IllegalArgumentException if the permits or the period are less than one
+     */
+    public RateLimit(int permits, long period, @Nonnull TimeUnit timeUnit) {
+        if (permits < 1) {
+            throw new IllegalArgumentException("The permits must be at least one!");
+        }
+        if (period < 1) {
+            throw new IllegalArgumentException("The period must be at least one!");
+        }
+        this.permits = permits;
+        this.periodNanos = timeUnit.toNanos(period);
+    }
+
+    /**
+     * Get the maximum amount of events within the period.
+     *
+     * @return the maximum amount of events within the period
+     */
+    public int getPermits() {
+        return permits;
+    }
+
+    /**
+     * Get the period in which the permits are refilled completely.
+     *
+     * @param timeUnit the time unit to convert the period to
+     * @return the period in the given time unit
+     */
+    public long getPeriod(@Nonnull TimeUnit timeUnit) {
+        return timeUnit.convert(periodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    TokenBucket newBucket() {
+        return new TokenBucket(Math.max(1, periodNanos / permits), periodNanos);
+    }
+}
@@ -0,0 +1,34 @@
+package de.kaktushose.discord.reactionwaiter;
+
+/**
+ * Describes what happened to the reactions of a message in a {@link ReactionEvent}.
+ *
+ * @author Kaktushose
+ * @version 3.0.0
+ * @see ReactionWaiter#listenForRemovals(boolean)
+ * @since 3.0.0
+ */
+
+public enum ReactionAction {
+
+    /**
+     * A user added a reaction.
+     */
+    ADD,
+
+    /**
+     * A user removed their reaction.
+     */
+    REMOVE,
+
+    /**
+     * All reactions of one emote got removed at once, e.g. by a moderator. There is no user for this action.
+     */
+    REMOVE_EMOTE,
+
+    /**
+     * All reactions of the message got removed at once. There is neither a user nor an emote for this action.
+     */
+    REMOVE_ALL
+
+}
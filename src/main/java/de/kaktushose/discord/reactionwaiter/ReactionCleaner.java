@@ -0,0 +1,243 @@
+package de.kaktushose.discord.reactionwaiter;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Emote;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.api.requests.RestAction;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Removes the reactions of messages whose {@link ReactionWaiter}s got unregistered. Instead of firing one request per
+ * waiter, cleanups are queued per channel, since that's how Discord buckets the reaction endpoints. Every channel has
+ * at most one request in flight, the next one is sent a short interval after the previous one completed. Multiple
+ * cleanups for the same message are merged while they are queued.
+ *
+ * @author Kaktushose
+ * @version 3.0.0
+ * @since 3.0.0
+ */
+final class ReactionCleaner {
+
+    private final ScheduledExecutorService scheduler;
+    private final Map<Long, ChannelQueue> channels = new ConcurrentHashMap<>();
+    private final LongAdder queued = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private volatile WaiterMetrics metrics = WaiterMetrics.NOOP;
+    private volatile CleanupMode mode = CleanupMode.ALL;
+    private volatile long intervalMillis = 250;
+
+    ReactionCleaner(ScheduledExecutorService scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    void setMetrics(WaiterMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    void setMode(CleanupMode mode) {
+        this.mode = mode;
+    }
+
+    void setInterval(long interval, TimeUnit timeUnit) {
+        this.intervalMillis = timeUnit.toMillis(interval);
+    }
+
+    /**
+     * Queues the removal of the reactions of the message of the given waiter.
+     *
+     * @param waiter the waiter whose message the reactions should be removed from
+     * @param emotes the emotes of the waiter, only used by {@link CleanupMode#OWN}
+     */
+    void clean(ReactionWaiter waiter, Collection<String> emotes) {
+        if (waiter.getJDA() == null || (mode == CleanupMode.OWN && emotes.isEmpty())) {
+            return;
+        }
+        long channelId = waiter.getChannelIdLong();
+        long messageId = waiter.getMessageIdLong();
+        while (true) {
+            ChannelQueue channel = channels.computeIfAbsent(channelId, ChannelQueue::new);
+            synchronized (channel) {
+                // the queue got discarded in the meantime, retry with a fresh one
+                if (channel.discarded) {
+                    continue;
+                }
+                Cleanup cleanup = channel.pending.get(messageId);
+                if (cleanup == null) {
+                    channel.pending.put(messageId, new Cleanup(waiter.getJDA(), channelId, messageId, mode, emotes));
+                    queued.increment();
+                    metrics.onCleanupQueued();
+                } else {
+                    cleanup.merge(emotes);
+                }
+                if (!channel.busy) {
+                    channel.busy = true;
+                    execute(channel, 0);
+                }
+            }
+            return;
+        }
+    }
+
+    /**
+     * Waits until all queued cleanups are done or the deadline is reached.
+     *
+     * @param deadline the deadline as returned by {@link System#nanoTime()}
+     * @return {@code true} if all cleanups are done
+     * @throws InterruptedException if the current thread got interrupted while waiting
+     */
+    boolean awaitIdle(long deadline) throws InterruptedException {
+        // a channel is only dropped once its last request completed, so this also covers the requests in flight
+        while (!channels.isEmpty()) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.sleep(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(10)));
+        }
+        return true;
+    }
+
+    long getQueued() {
+        return queued.sum();
+    }
+
+    long getCompleted() {
+        return completed.sum();
+    }
+
+    long getFailed() {
+        return failed.sum();
+    }
+
+    private void next(ChannelQueue channel) {
+        RestAction<Void> action;
+        Cleanup cleanup;
+        synchronized (channel) {
+            Iterator<Cleanup> iterator = channel.pending.values().iterator();
+            if (!iterator.hasNext()) {
+                channel.busy = false;
+                channel.discarded = true;
+                channels.remove(channel.channelId, channel);
+                return;
+            }
+            cleanup = iterator.next();
+            action = cleanup.nextAction();
+            if (cleanup.isDone()) {
+                iterator.remove();
+                queued.decrement();
+            }
+        }
+        boolean last = cleanup.isDone();
+        if (action == null) {
+            // the channel or custom emote isn't cached anymore, most likely it got deleted
+            failed.increment();
+            metrics.onCleanupFailed();
+            execute(channel, 0);
+            return;
+        }
+        action.queue(success -> {
+            if (last) {
+                completed.increment();
+                metrics.onCleanupCompleted();
+            }
+            scheduleNext(channel);
+        }, failure -> {
+            // most likely the message got deleted or permissions are missing, don't retry
+            failed.increment();
+            metrics.onCleanupFailed();
+            scheduleNext(channel);
+        });
+    }
+
+    private void scheduleNext(ChannelQueue channel) {
+        execute(channel, intervalMillis);
+    }
+
+    private void execute(ChannelQueue channel, long delayMillis) {
+        try {
+            scheduler.schedule(() -> next(channel), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // the listener got shut down, the remaining cleanups are dropped
+            synchronized (channel) {
+                queued.add(-channel.pending.size());
+                channel.pending.clear();
+                channel.busy = false;
+                channel.discarded = true;
+                channels.remove(channel.channelId, channel);
+            }
+        }
+    }
+
+    private static final class ChannelQueue {
+
+        private final long channelId;
+        private final Map<Long, Cleanup> pending = new LinkedHashMap<>();
+        private boolean busy;
+        private boolean discarded;
+
+        private ChannelQueue(long channelId) {
+            this.channelId = channelId;
+        }
+    }
+
+    private static final class Cleanup {
+
+        private final JDA jda;
+        private final long channelId;
+        private final long messageId;
+        private final CleanupMode mode;
+        private final Queue<String> emotes;
+
+        private Cleanup(JDA jda, long channelId, long messageId, CleanupMode mode, Collection<String> emotes) {
+            this.jda = jda;
+            this.channelId = channelId;
+            this.messageId = messageId;
+            this.mode = mode;
+            this.emotes = new ArrayDeque<>(mode == CleanupMode.OWN ? emotes : Collections.<String>emptySet());
+        }
+
+        private void merge(Collection<String> others) {
+            if (mode == CleanupMode.OWN) {
+                for (String emote : others) {
+                    if (!emotes.contains(emote)) {
+                        emotes.add(emote);
+                    }
+                }
+            }
+        }
+
+        // the channel is resolved as late as possible, so that the queue doesn't keep any entities alive
+        private RestAction<Void> nextAction() {
+            TextChannel channel = jda.getTextChannelById(channelId);
+            if (mode == CleanupMode.ALL) {
+                return channel == null ? null : channel.clearReactionsById(messageId);
+            }
+            String emote = emotes.poll();
+            if (channel == null) {
+                return null;
+            }
+            if (EmoteKeys.isCustom(emote)) {
+                Emote custom = EmoteKeys.resolve(jda, emote);
+                return custom == null ? null : channel.removeReactionById(messageId, custom);
+            }
+            return channel.removeReactionById(messageId, emote);
+        }
+
+        private boolean isDone() {
+            return mode == CleanupMode.ALL || emotes.isEmpty();
+        }
+    }
+}
@@ -1,10 +1,19 @@
 package de.kaktushose.discord.reactionwaiter;
 
 import net.dv8tion.jda.api.EmbedBuilder;
+import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.MessageBuilder;
+import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.entities.Message;
-import net.dv8tion.jda.api.events.message.guild.react.GuildMessageReactionAddEvent;
+import net.dv8tion.jda.api.entities.MessageReaction;
+import net.dv8tion.jda.api.entities.PrivateChannel;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.events.message.guild.GenericGuildMessageEvent;
+import net.dv8tion.jda.api.events.message.guild.react.GenericGuildMessageReactionEvent;
+import net.dv8tion.jda.api.events.message.guild.react.GuildMessageReactionRemoveEmoteEvent;
+import net.dv8tion.jda.api.requests.RestAction;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -12,29 +21,172 @@ import java.util.function.Consumer;
 
 /**
  * Represents a reaction event.
- * This class is similar to {@code GuildMessageReactionAddEvent}, but it provides some extra utilities to work with.
+ * This class is a lightweight view of the reaction events from JDA, but it provides some extra utilities to work with.
+ * It doesn't copy the JDA event, and all waiters that match the same JDA event share the same instance.
+ * By default only added reactions are delivered, use {@link ReactionWaiter#listenForRemovals(boolean)} to also receive
+ * removed reactions. Check {@link #getAction()} to tell them apart.
  *
  * @author Kaktushose
- * @version 2.0.0
+ * @version 3.0.0
  * @since 1.0.0
  */
 
-public class ReactionEvent extends GuildMessageReactionAddEvent {
+public class ReactionEvent {
 
-    private final Member executor;
+    private final GenericGuildMessageEvent event;
     private final String emote;
+    private final ReactionAction action;
 
-    ReactionEvent(GuildMessageReactionAddEvent event, String emote) {
-        super(event.getJDA(), event.getResponseNumber(), event.getMember(), event.getReaction());
+    ReactionEvent(GenericGuildMessageEvent event, String emote, ReactionAction action) {
+        this.event = event;
         this.emote = emote;
-        this.executor = event.getMember();
+        this.action = action;
+    }
+
+    /**
+     * Returns the underlying JDA event. This is a {@code GenericGuildMessageReactionEvent} for {@link ReactionAction#ADD}
+     * and {@link ReactionAction#REMOVE}, a {@code GuildMessageReactionRemoveEmoteEvent} for
+     * {@link ReactionAction#REMOVE_EMOTE} and a {@code GuildMessageReactionRemoveAllEvent} for
+     * {@link ReactionAction#REMOVE_ALL}.
+     *
+     * @return the JDA event this event is based on
+     */
+    public GenericGuildMessageEvent getEvent() {
+        return event;
+    }
+
+    /**
+     * Returns whether the reaction was added or removed.
+     *
+     * @return the {@link ReactionAction} of this event
+     */
+    public ReactionAction getAction() {
+        return action;
+    }
+
+    /**
+     * Returns the JDA instance that fired the event.
+     *
+     * @return the {@code JDA} instance
+     */
+    public JDA getJDA() {
+        return event.getJDA();
+    }
+
+    /**
+     * Returns the response number of the event.
+     *
+     * @return the response number
+     */
+    public long getResponseNumber() {
+        return event.getResponseNumber();
+    }
+
+    /**
+     * Returns the {@code Guild} the reaction was added in.
+     *
+     * @return the {@code Guild}
+     */
+    public Guild getGuild() {
+        return event.getGuild();
+    }
 
+    /**
+     * Returns the {@code TextChannel} the reaction was added in.
+     *
+     * @return the {@code TextChannel}
+     */
+    public TextChannel getChannel() {
+        return event.getChannel();
+    }
+
+    /**
+     * Returns the id of the message the reaction was added to.
+     *
+     * @return the id of the message
+     */
+    public long getMessageIdLong() {
+        return event.getMessageIdLong();
     }
 
     /**
-     * Returns the codepoint of the emote the reaction event was triggered with.
+     * Returns the id of the message the reaction was added to.
      *
-     * @return the codepoint of the emote
+     * @return the id of the message
+     */
+    public String getMessageId() {
+        return event.getMessageId();
+    }
+
+    /**
+     * Returns the {@code User} who added or removed the reaction. Might be null if the user isn't cached or the
+     * reactions were removed in bulk.
+     *
+     * @return the {@code User} who added or removed the reaction
+     */
+    @Nullable
+    public User getUser() {
+        return event instanceof GenericGuildMessageReactionEvent ? ((GenericGuildMessageReactionEvent) event).getUser() : null;
+    }
+
+    /**
+     * Returns the id of the user who added or removed the reaction.
+     *
+     * @return the id of the user or {@code 0} if the reactions were removed in bulk
+     */
+    public long getUserIdLong() {
+        return event instanceof GenericGuildMessageReactionEvent ? ((GenericGuildMessageReactionEvent) event).getUserIdLong() : 0;
+    }
+
+    /**
+     * Returns the {@code Member} who added or removed the reaction. Might be null if the member isn't cached or the
+     * reactions were removed in bulk.
+     *
+     * @return the {@code Member} who added or removed the reaction
+     */
+    @Nullable
+    public Member getMember() {
+        return event instanceof GenericGuildMessageReactionEvent ? ((GenericGuildMessageReactionEvent) event).getMember() : null;
+    }
+
+    /**
+     * Returns the {@code MessageReaction} of the event. Is null for {@link ReactionAction#REMOVE_ALL}.
+     *
+     * @return the {@code MessageReaction}
+     */
+    @Nullable
+    public MessageReaction getReaction() {
+        if (event instanceof GenericGuildMessageReactionEvent) {
+            return ((GenericGuildMessageReactionEvent) event).getReaction();
+        }
+        if (event instanceof GuildMessageReactionRemoveEmoteEvent) {
+            return ((GuildMessageReactionRemoveEmoteEvent) event).getReaction();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the {@code ReactionEmote} of the event. Is null for {@link ReactionAction#REMOVE_ALL}.
+     *
+     * @return the {@code ReactionEmote}
+     */
+    @Nullable
+    public MessageReaction.ReactionEmote getReactionEmote() {
+        if (event instanceof GenericGuildMessageReactionEvent) {
+            return ((GenericGuildMessageReactionEvent) event).getReactionEmote();
+        }
+        if (event instanceof GuildMessageReactionRemoveEmoteEvent) {
+            return ((GuildMessageReactionRemoveEmoteEvent) event).getReactionEmote();
+        }
+        return null;
+    }
+
+    /**
+     * Returns the codepoint of the emote the reaction event was triggered with, or the id of a custom emote. This is
+     * the same value the emote is contained with in {@link ReactionWaiter#getEmotes()}. Is null for
+     * {@link ReactionAction#REMOVE_ALL}.
+     *
+     * @return the codepoint of the emote or the id of a custom emote
      */
     public String getEmote() {
         return emote;
@@ -140,12 +292,14 @@ public class ReactionEvent extends GuildMessageReactionAddEvent {
     }
 
     /**
-     * Sends a direct message to the user who triggered the reaction event.
+     * Sends a direct message to the user who triggered the reaction event. If the user isn't cached, which can happen
+     * for removed reactions, the user gets retrieved first.
      *
      * @param message the message to send
+     * @throws IllegalStateException if the reactions were removed in bulk and there is no user
      */
     public void sendPrivateMessage(@Nonnull String message) {
-        executor.getUser().openPrivateChannel().queue(privateChannel -> privateChannel.sendMessage(message).queue());
+        openPrivateChannel(privateChannel -> privateChannel.sendMessage(message).queue());
     }
 
     /**
@@ -153,27 +307,42 @@ public class ReactionEvent extends GuildMessageReactionAddEvent {
      * This method might be useful in combination with the MessageBuilder.
      *
      * @param message the {@code Message} to send send
+     * @throws IllegalStateException if the reactions were removed in bulk and there is no user
      */
     public void sendPrivateMessage(@Nonnull Message message) {
-        executor.getUser().openPrivateChannel().queue(privateChannel -> privateChannel.sendMessage(message).queue());
+        openPrivateChannel(privateChannel -> privateChannel.sendMessage(message).queue());
     }
 
     /**
      * Sends an Embed via direct message to the user who triggered the reaction event.
      *
      * @param messageBuilder the {@code MessageBuilder} that will be send
+     * @throws IllegalStateException if the reactions were removed in bulk and there is no user
      */
     public void sendPrivateMessage(@Nonnull MessageBuilder messageBuilder) {
-        executor.getUser().openPrivateChannel().queue(privateChannel -> privateChannel.sendMessage(messageBuilder.build()).queue());
+        openPrivateChannel(privateChannel -> privateChannel.sendMessage(messageBuilder.build()).queue());
     }
 
     /**
      * Sends an Embed via direct message to the user who triggered the reaction event.
      *
      * @param embedBuilder the {@code EmbedBuilder} to send
+     * @throws IllegalStateException if the reactions were removed in bulk and there is no user
      */
     public void sendPrivateMessage(@Nonnull EmbedBuilder embedBuilder) {
-        executor.getUser().openPrivateChannel().queue(privateChannel -> privateChannel.sendMessage(embedBuilder.build()).queue());
+        openPrivateChannel(privateChannel -> privateChannel.sendMessage(embedBuilder.build()).queue());
+    }
+
+    private void openPrivateChannel(Consumer<PrivateChannel> consumer) {
+        long userId = getUserIdLong();
+        if (userId == 0) {
+            throw new IllegalStateException("The reactions were removed in bulk, there is no user to send a message to!");
+        }
+        User user = getUser();
+        RestAction<PrivateChannel> action = user == null
+                ? getJDA().retrieveUserById(userId).flatMap(User::openPrivateChannel)
+                : user.openPrivateChannel();
+        action.queue(consumer);
     }
 
 }
@@ -0,0 +1,36 @@
+package de.kaktushose.discord.reactionwaiter;
+
+import javax.annotation.Nonnull;
+
+/**
+ * A handler that is registered once under a key and shared by any number of {@link ReactionWaiter}s. Unlike a
+ * {@code Consumer} lambda it doesn't need to capture any state, the waiter passes its own payload instead. Thus a
+ * waiter that uses a handler only references the shared instance and a {@code long}, and can be persisted by key.
+ *
+ * <pre>{@code
+ * ReactionListener.registerHandler("role-menu", (waiter, event, roleId) ->
+ *         event.getGuild().addRoleToMember(event.getUserIdLong(), event.getGuild().getRoleById(roleId)).queue());
+ *
+ * new ReactionWaiter(message, "👍").onEvent("role-menu", role.getIdLong());
+ * }</pre>
+ *
+ * @author Kaktushose
+ * @version 3.0.0
+ * @see ReactionListener#registerHandler(String, ReactionHandler)
+ * @see ReactionWaiter#onEvent(String, long)
+ * @since 3.0.0
+ */
+
+@FunctionalInterface
+public interface ReactionHandler {
+
+    /**
+     * Gets called when a {@link ReactionEvent} matches a waiter that uses this handler.
+     *
+     * @param waiter  the waiter the event matched
+     * @param event   the {@link ReactionEvent} that got triggered
+     * @param payload the payload of the waiter
+     */
+    void handle(@Nonnull ReactionWaiter waiter, @Nonnull ReactionEvent event, long payload);
+
+}
@@ -1,35 +1,163 @@
 package de.kaktushose.discord.reactionwaiter;
 
 import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.MessageReaction;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.events.channel.text.TextChannelDeleteEvent;
+import net.dv8tion.jda.api.events.guild.GuildLeaveEvent;
+import net.dv8tion.jda.api.events.message.guild.GenericGuildMessageEvent;
+import net.dv8tion.jda.api.events.message.guild.GuildMessageDeleteEvent;
 import net.dv8tion.jda.api.events.message.guild.react.GuildMessageReactionAddEvent;
+import net.dv8tion.jda.api.events.message.guild.react.GuildMessageReactionRemoveAllEvent;
+import net.dv8tion.jda.api.events.message.guild.react.GuildMessageReactionRemoveEmoteEvent;
+import net.dv8tion.jda.api.events.message.guild.react.GuildMessageReactionRemoveEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import org.jetbrains.annotations.NotNull;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
 
 /**
  * This class is a sub class of {@code ListenerAdapter} from JDA.
  * It checks all incoming {@code GuildMessageReactionAddEvent}s if they matches one of the active {@link de.kaktushose.discord.reactionwaiter.ReactionWaiter}s <br>
+ * Removed reactions are checked the same way, but only delivered to waiters that
+ * {@link ReactionWaiter#listenForRemovals(boolean) listen for removals}. <br>
+ * Waiters are deactivated automatically when their message or channel gets deleted or the bot leaves their guild. <br>
  * Make sure to activate the listener before using this library. Otherwise no {@code GuildMessageReactionAddEvent} will be tracked.
  *
+ * <p>Every instance has its own waiters, configuration and scheduler. The static methods of this class operate on a
+ * shared default instance, which is sufficient for a single JDA instance. If you use sharding, create one instance per
+ * shard with {@link #builder()} and {@link #attach(JDA)} it. Waiters bound to a message or member are then registered at
+ * the instance attached to the JDA of that entity, thus every shard only checks its own waiters.
+ *
  * @author Kaktushose
- * @version 2.0.0
+ * @version 3.0.0
  * @since 1.0.0
  */
 public class ReactionListener extends ListenerAdapter {
 
+    private final static Map<JDA, ReactionListener> attached = new ConcurrentHashMap<>();
+    private static volatile ReactionListener defaultListener = new ReactionListener();
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownsScheduler;
+    private final List<ScheduledFuture<?>> periodicTasks = new ArrayList<>(2);
+    private final Set<JDA> jdas = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean shutdown = new AtomicBoolean();
+    private final LongAdder inFlight = new LongAdder();
+    private final WaiterRegistry registry;
+    private final TimingWheel timingWheel;
+    private final ReactionCleaner cleaner;
+    private volatile AsyncDispatcher dispatcher;
+    private volatile WaiterMetrics metrics = WaiterMetrics.NOOP;
+    private final LongAdder prefilterPassed = new LongAdder();
+    private final LongAdder prefilterRejected = new LongAdder();
+    private final Map<Long, TokenBucket> userBuckets = new ConcurrentHashMap<>();
+    private final Map<Long, TokenBucket> guildBuckets = new ConcurrentHashMap<>();
+    private volatile RateLimit userRateLimit;
+    private volatile RateLimit guildRateLimit;
+    // the stored records of the shards that weren't attached yet, null until the store got loaded
+    private Map<Integer, List<WaiterRecord>> pendingRecords;
+    private volatile WaiterStore store;
+    private volatile Function<String, Consumer<ReactionEvent>> resolver;
+    private final Map<String, ReactionHandler> handlers = new ConcurrentHashMap<>();
+    private volatile CapacityTracker capacity;
+    private volatile Consumer<ReactionWaiter> evictionListener;
+    private volatile boolean autoRemove = true;
+    private volatile boolean removeReactions = true;
+    private volatile long delay = 5;
+    private volatile TimeUnit timeUnit = TimeUnit.MINUTES;
+
+    /**
+     * Creates a new listener with the default configuration and its own scheduler thread. Use {@link #builder()} to
+     * customize the configuration. The scheduler thread is a daemon thread, it doesn't keep the JVM alive, but should
+     * still be released with {@link #shutdown(boolean, long, TimeUnit)} if the listener isn't needed anymore.
+     */
+    public ReactionListener() {
+        this(newScheduler(), true, WaiterRegistry.DEFAULT_EXPECTED_MESSAGES);
+    }
+
+    private ReactionListener(ScheduledExecutorService scheduler, boolean ownsScheduler, int expectedMessages) {
+        this.scheduler = scheduler;
+        this.ownsScheduler = ownsScheduler;
+        this.registry = new WaiterRegistry(expectedMessages);
+        this.timingWheel = new TimingWheel(scheduler, 100, TimeUnit.MILLISECONDS, 512, this::expire);
+        this.cleaner = new ReactionCleaner(scheduler);
+        periodicTasks.add(scheduler.scheduleWithFixedDelay(this::purgeBuckets, 1, 1, TimeUnit.MINUTES));
+        periodicTasks.add(scheduler.scheduleWithFixedDelay(this::flushStore, 1, 1, TimeUnit.SECONDS));
+    }
 
-    private final static ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-    private final static List<ReactionWaiter> waiters = new CopyOnWriteArrayList<>();
-    private static boolean autoRemove = true;
-    private static boolean removeReactions = true;
-    private static long delay = 5;
-    private static TimeUnit timeUnit = TimeUnit.MINUTES;
+    private static ScheduledExecutorService newScheduler() {
+        return Executors.newScheduledThreadPool(1, runnable -> {
+            Thread thread = new Thread(runnable, "ReactionListener-Scheduler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Creates a new {@link Builder} to configure a listener instance.
+     *
+     * @return a new {@link Builder}
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Get the default listener that is used by the static methods of this class. Once the default listener got
+     * {@link #shutdown(boolean, long, TimeUnit) shut down}, it is replaced by a new instance on the next call, thus the
+     * static methods keep working, e.g. after a hot redeploy. The new instance starts with the default configuration
+     * and isn't attached to any JDA, so it has to be configured and {@link #startListening(JDA) started} again.
+     *
+     * @return the default listener
+     */
+    public static ReactionListener getDefault() {
+        ReactionListener listener = defaultListener;
+        if (!listener.isShutdown()) {
+            return listener;
+        }
+        synchronized (ReactionListener.class) {
+            if (defaultListener.isShutdown()) {
+                defaultListener = new ReactionListener();
+            }
+            return defaultListener;
+        }
+    }
+
+    /**
+     * Get the listener that is attached to the given JDA. Falls back to the default listener if no listener got
+     * attached explicitly.
+     *
+     * @param jda the JDA to get the listener for
+     * @return the listener handling the events of the JDA
+     */
+    public static ReactionListener of(@Nullable JDA jda) {
+        ReactionListener listener = jda == null ? null : attached.get(jda);
+        return listener == null ? getDefault() : listener;
+    }
 
     /**
      * Adds this listener to the active listeners of the JDA. You have to call this method before using the library.
@@ -37,16 +165,17 @@ public class ReactionListener extends ListenerAdapter {
      * @param jda he JDA with which the listener will be registered
      */
     public static void startListening(@Nonnull JDA jda) {
-        jda.addEventListener(new ReactionListener());
+        getDefault().attach(jda);
     }
 
     /**
      * Removes this listener from the active listeners of the JDA. This method has no real use case, but is available for the sake of completeness.
+     * To also release the threads of the listener, use {@link #shutdown(boolean, long, TimeUnit)} on {@link #getDefault()}.
      *
      * @param jda the JDA where the listener will be removed
      */
     public static void stopListening(@Nonnull JDA jda) {
-        jda.removeEventListener(ReactionListener.class);
+        getDefault().detach(jda);
     }
 
     /**
@@ -56,7 +185,7 @@ public class ReactionListener extends ListenerAdapter {
      * @param autoRemove {@code true} if waiters should be removed automatically
      */
     public static void setAutoRemove(boolean autoRemove) {
-        ReactionListener.autoRemove = autoRemove;
+        getDefault().autoRemove = autoRemove;
     }
 
     /**
@@ -66,39 +195,779 @@ public class ReactionListener extends ListenerAdapter {
      * @param timeUnit the time unit of the delay parameter
      */
     public static void setAutoRemoveDelay(long delay, TimeUnit timeUnit) {
-        ReactionListener.delay = delay;
-        ReactionListener.timeUnit = timeUnit;
+        ReactionListener listener = getDefault();
+        listener.delay = delay;
+        listener.timeUnit = timeUnit;
     }
 
-    static void addReactionWaiter(ReactionWaiter waiter) {
-        waiters.add(waiter);
-        if (autoRemove) {
-            removeReactionWaiter(waiter, delay, timeUnit);
+    /**
+     * Set an {@link Executor} that will call the consumers of the waiters instead of the JDA event thread. Thus a slow
+     * consumer won't stall the reaction handling of the whole JDA instance. The events of one waiter will still be
+     * processed one after another in the order they were received. On Java 21 and newer this works well with
+     * {@code Executors.newVirtualThreadPerTaskExecutor()}.
+     * Every waiter queues up to 1024 events, if the queue is full the JDA event thread will block. Pass {@code null}
+     * to call the consumers on the JDA event thread again, which is the default.
+     *
+     * @param executor the {@link Executor} to call the consumers on or {@code null}
+     */
+    public static void setDispatchExecutor(@Nullable Executor executor) {
+        setDispatchExecutor(executor, 1024, OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * Set an {@link Executor} that will call the consumers of the waiters instead of the JDA event thread. Thus a slow
+     * consumer won't stall the reaction handling of the whole JDA instance. The events of one waiter will still be
+     * processed one after another in the order they were received. On Java 21 and newer this works well with
+     * {@code Executors.newVirtualThreadPerTaskExecutor()}.
+     * Pass {@code null} to call the consumers on the JDA event thread again, which is the default.
+     *
+     * @param executor      the {@link Executor} to call the consumers on or {@code null}
+     * @param queueCapacity the maximum amount of events queued per waiter
+     * @param policy        the {@link OverflowPolicy} to apply if the queue of a waiter is full
+     * @throws IllegalArgumentException if the queue capacity is less than one
+     */
+    public static void setDispatchExecutor(@Nullable Executor executor, int queueCapacity, @Nonnull OverflowPolicy policy) {
+        ReactionListener listener = getDefault();
+        listener.dispatcher = executor == null ? null : new AsyncDispatcher(listener, executor, queueCapacity, policy);
+    }
+
+    /**
+     * Set which reactions get removed when a waiter gets unregistered. The default is {@link CleanupMode#ALL}.
+     *
+     * @param cleanupMode the {@link CleanupMode} to use
+     */
+    public static void setCleanupMode(@Nonnull CleanupMode cleanupMode) {
+        getDefault().cleaner.setMode(cleanupMode);
+    }
+
+    /**
+     * Set the time to wait between two reaction removals in the same channel. Removals are queued per channel and
+     * multiple removals for the same message are merged, so that many expiring waiters don't exhaust the rate limits.
+     * The default value is 250 milliseconds.
+     *
+     * @param interval the time to wait between two removals
+     * @param timeUnit the time unit of the interval parameter
+     */
+    public static void setCleanupInterval(long interval, @Nonnull TimeUnit timeUnit) {
+        getDefault().cleaner.setInterval(interval, timeUnit);
+    }
+
+    /**
+     * Set the {@link WaiterMetrics} the default listener reports to. The default is {@link WaiterMetrics#NOOP}.
+     *
+     * @param metrics the {@link WaiterMetrics} to report to
+     * @see MicrometerWaiterMetrics
+     */
+    public static void setMetrics(@Nonnull WaiterMetrics metrics) {
+        getDefault().bindMetrics(metrics);
+    }
+
+    /**
+     * Limits how often the consumers of the default listener get called for the reactions of a single user. Events
+     * that exceed the limit are dropped before they are checked against the waiters. Pass {@code null} to remove the
+     * limit, which is the default.
+     *
+     * @param rateLimit the {@link RateLimit} per user or {@code null}
+     * @see ReactionWaiter#setRateLimit(RateLimit)
+     */
+    public static void setUserRateLimit(@Nullable RateLimit rateLimit) {
+        ReactionListener listener = getDefault();
+        listener.userRateLimit = rateLimit;
+        listener.userBuckets.clear();
+    }
+
+    /**
+     * Limits how often the consumers of the default listener get called for the reactions within a single guild.
+     * Events that exceed the limit are dropped before they are checked against the waiters. Pass {@code null} to
+     * remove the limit, which is the default.
+     *
+     * @param rateLimit the {@link RateLimit} per guild or {@code null}
+     * @see ReactionWaiter#setRateLimit(RateLimit)
+     */
+    public static void setGuildRateLimit(@Nullable RateLimit rateLimit) {
+        ReactionListener listener = getDefault();
+        listener.guildRateLimit = rateLimit;
+        listener.guildBuckets.clear();
+    }
+
+    /**
+     * Limits the amount of waiters the default listener holds. A limit of {@code 0} means unlimited, which is the
+     * default for all three limits. If a new waiter would exceed a limit, the given {@link EvictionPolicy} either
+     * rejects it or evicts registered waiters to make room. The guild of a waiter is the guild of its message or
+     * member or the guild it is {@link ReactionWaiter#inGuild(long) filtered} by, the member limit only applies to
+     * waiters that only accept a specific member. Evicted and rejected waiters are deactivated, their
+     * {@link ReactionWaiter#await() future} completes with a {@code CancellationException} and their
+     * {@link ReactionWaiter#onEviction(Runnable) eviction callback} gets called. Enforcing the limits is O(1) per
+     * registration. Waiters that are already registered when the limits change don't count towards the new limits.
+     *
+     * @param globalLimit the maximum amount of waiters
+     * @param guildLimit  the maximum amount of waiters per guild
+     * @param memberLimit the maximum amount of waiters per member
+     * @param policy      the {@link EvictionPolicy} to apply if a limit is reached
+     * @throws IllegalArgumentException if a limit is negative
+     */
+    public static void setCapacity(int globalLimit, int guildLimit, int memberLimit, @Nonnull EvictionPolicy policy) {
+        getDefault().capacity = capacityOf(globalLimit, guildLimit, memberLimit, policy);
+    }
+
+    /**
+     * Set a callback that gets called for every waiter the default listener evicts or rejects because of a capacity
+     * limit. It's called in addition to the eviction callback of the waiter itself.
+     *
+     * @param evictionListener the callback to call on eviction or {@code null}
+     * @see #setCapacity(int, int, int, EvictionPolicy)
+     */
+    public static void setEvictionListener(@Nullable Consumer<ReactionWaiter> evictionListener) {
+        getDefault().evictionListener = evictionListener;
+    }
+
+    /**
+     * Registers a {@link ReactionHandler} at the default listener. Waiters can then be activated with
+     * {@link ReactionWaiter#onEvent(String, long)} and share this handler instance. An already registered handler
+     * with the same key gets replaced, waiters that are already active keep the previous one.
+     *
+     * @param key     the key to register the handler under
+     * @param handler the {@link ReactionHandler} to register
+     */
+    public static void registerHandler(@Nonnull String key, @Nonnull ReactionHandler handler) {
+        getDefault().handlers.put(key, handler);
+    }
+
+    /**
+     * Set the {@link WaiterStore} the default listener persists waiters in. Waiters that use a
+     * {@link ReactionHandler} or were marked with {@link ReactionWaiter#persist(String)} are saved when they get
+     * registered and removed from the store when they get unregistered. The stored waiters of a shard are restored once,
+     * when the listener gets attached to that shard for the first time, thus the handlers should be registered before.
+     * Records whose handler isn't registered are skipped but kept in the store, expired records are discarded.
+     *
+     * @param store the {@link WaiterStore} to use
+     * @see FileWaiterStore
+     */
+    public static void setStore(@Nonnull WaiterStore store) {
+        getDefault().store = store;
+    }
+
+    /**
+     * Set the {@link WaiterStore} the default listener persists waiters in. Works like
+     * {@link #setStore(WaiterStore)}, but keys that have no registered {@link ReactionHandler} are resolved to a
+     * consumer with the given function. This is needed for waiters that were marked with
+     * {@link ReactionWaiter#persist(String)}. Records whose key resolves to {@code null} are skipped but kept in the
+     * store.
+     *
+     * @param store    the {@link WaiterStore} to use
+     * @param resolver the function that resolves the key of a stored waiter to its consumer
+     * @see FileWaiterStore
+     */
+    public static void setStore(@Nonnull WaiterStore store, @Nonnull Function<String, Consumer<ReactionEvent>> resolver) {
+        ReactionListener listener = getDefault();
+        listener.store = store;
+        listener.resolver = resolver;
+    }
+
+    /**
+     * Get the amount of reaction removals that are currently queued by the default listener.
+     *
+     * @return the amount of queued reaction removals
+     */
+    public static long getQueuedCleanups() {
+        return getDefault().cleaner.getQueued();
+    }
+
+    /**
+     * Get the amount of reaction removals of the default listener that completed successfully.
+     *
+     * @return the amount of completed reaction removals
+     */
+    public static long getCompletedCleanups() {
+        return getDefault().cleaner.getCompleted();
+    }
+
+    /**
+     * Get the amount of reaction removal requests of the default listener that failed, e.g. because the message got
+     * deleted.
+     *
+     * @return the amount of failed reaction removal requests
+     */
+    public static long getFailedCleanups() {
+        return getDefault().cleaner.getFailed();
+    }
+
+    /**
+     * Adds this listener instance to the active listeners of the JDA. Waiters that are bound to a message or member of
+     * this JDA will be registered at this instance from now on. If this listener has a {@link WaiterStore}, the stored
+     * waiters of the guilds this JDA is the shard of get restored the first time the shard gets attached. Stored
+     * waiters without a guild are restored with the first shard.
+     *
+     * @param jda the JDA with which the listener will be registered
+     * @throws IllegalStateException if this listener got shut down
+     */
+    public void attach(@Nonnull JDA jda) {
+        checkRunning();
+        WaiterStore store = this.store;
+        if (store != null) {
+            restore(jda, store);
+        }
+        jda.addEventListener(this);
+        jdas.add(jda);
+        if (this != defaultListener) {
+            attached.put(jda, this);
         }
     }
 
-    static void removeReactionWaiter(ReactionWaiter waiter, boolean removeReactions) {
-        if (!waiters.remove(waiter)) {
-            return;
+    /**
+     * Removes this listener instance from the active listeners of the JDA.
+     *
+     * @param jda the JDA where the listener will be removed
+     */
+    public void detach(@Nonnull JDA jda) {
+        jda.removeEventListener(this);
+        jdas.remove(jda);
+        attached.remove(jda, this);
+    }
+
+    /**
+     * Shuts this listener down and releases its threads, e.g. before a hot redeploy. The shutdown runs the following
+     * steps, all of them bounded by the given timeout:
+     * <ol>
+     *     <li>New waiters are rejected from now on.</li>
+     *     <li>If {@code drain} is {@code true}, the registered waiters keep receiving reactions until they are done
+     *     or the timeout elapsed.</li>
+     *     <li>The listener gets detached from all JDAs it was attached to.</li>
+     *     <li>All remaining waiters are deactivated at once, their {@link ReactionWaiter#await() futures} complete with
+     *     a {@code CancellationException}. Their reactions are left alone and their records stay in the
+     *     {@link WaiterStore}, so persisted waiters get restored after a restart.</li>
+     *     <li>The queued reaction removals are sent without pacing and the {@link WaiterStore} gets flushed. The store
+     *     isn't closed, since it wasn't opened by the listener.</li>
+     *     <li>Consumers that are still running or have events queued are awaited.</li>
+     *     <li>The scheduler gets shut down, unless it was passed to {@link Builder#setScheduler(ScheduledExecutorService)},
+     *     in which case only the tasks of this listener are cancelled.</li>
+     * </ol>
+     * Calling this more than once has no further effect. A listener that got shut down can't be used again, the default
+     * listener gets replaced by a new instance instead, see {@link #getDefault()}.
+     *
+     * @param drain    {@code true} to let the registered waiters finish before they get deactivated
+     * @param timeout  the maximum time to wait for the shutdown to complete
+     * @param timeUnit the time unit of the timeout parameter
+     * @return {@code true} if all steps completed before the timeout elapsed
+     * @throws InterruptedException if the current thread got interrupted while waiting
+     */
+    public boolean shutdown(boolean drain, long timeout, @Nonnull TimeUnit timeUnit) throws InterruptedException {
+        long deadline = System.nanoTime() + timeUnit.toNanos(timeout);
+        if (!shutdown.compareAndSet(false, true)) {
+            return true;
+        }
+        boolean completed = true;
+        while (drain && registry.size() > 0 && completed) {
+            completed = pause(deadline);
+        }
+        for (JDA jda : jdas) {
+            detach(jda);
+        }
+        for (ReactionWaiter waiter : registry.collect(waiter -> true)) {
+            discard(waiter);
+        }
+        cleaner.setInterval(0, TimeUnit.MILLISECONDS);
+        completed &= cleaner.awaitIdle(deadline);
+        flushStore();
+        while (!isIdle() && completed) {
+            completed = pause(deadline);
+        }
+        timingWheel.stop();
+        for (ScheduledFuture<?> task : periodicTasks) {
+            task.cancel(false);
+        }
+        if (ownsScheduler) {
+            // delayed tasks like the time windows of batched waiters still run, the periodic ones got cancelled
+            scheduler.shutdown();
+            if (!scheduler.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                scheduler.shutdownNow();
+                completed = false;
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * Whether this listener got shut down.
+     *
+     * @return {@code true} if this listener got shut down
+     * @see #shutdown(boolean, long, TimeUnit)
+     */
+    public boolean isShutdown() {
+        return shutdown.get();
+    }
+
+    /**
+     * Get the amount of waiters that are currently registered at this listener.
+     *
+     * @return the amount of registered waiters
+     */
+    public int getWaiterCount() {
+        return registry.size();
+    }
+
+    /**
+     * Activates all given waiters at once with the same consumer. Unlike calling
+     * {@link ReactionWaiter#onEvent(Consumer)} for every waiter, every segment of the waiter index gets locked only
+     * once and the expiry deadline is computed only once. The waiters get registered at this listener, waiters that
+     * are already active get the new consumer.
+     *
+     * @param waiters  the waiters to activate
+     * @param consumer the callback that will be called when a {@link ReactionEvent} got triggered
+     * @return the amount of waiters that weren't active before
+     */
+    public int registerAll(@Nonnull Collection<ReactionWaiter> waiters, @Nonnull Consumer<ReactionEvent> consumer) {
+        for (ReactionWaiter waiter : waiters) {
+            waiter.using(this);
+            waiter.useConsumer(consumer);
+        }
+        return addAll(waiters);
+    }
+
+    /**
+     * Activates all given waiters at once with the {@link ReactionHandler} that is registered under the given key.
+     * Unlike calling {@link ReactionWaiter#onEvent(String, long)} for every waiter, every segment of the waiter index
+     * gets locked only once and the expiry deadline is computed only once. The waiters get registered at this listener,
+     * waiters that are already active get the new handler.
+     *
+     * @param waiters    the waiters to activate
+     * @param handlerKey the key the {@link ReactionHandler} is registered under
+     * @param payload    the function that computes the payload of every waiter
+     * @return the amount of waiters that weren't active before
+     * @throws IllegalArgumentException if no handler is registered under the given key
+     */
+    public int registerAll(@Nonnull Collection<ReactionWaiter> waiters, @Nonnull String handlerKey, @Nonnull ToLongFunction<ReactionWaiter> payload) {
+        ReactionHandler handler = getHandler(handlerKey);
+        if (handler == null) {
+            throw new IllegalArgumentException("No handler registered for key " + handlerKey);
+        }
+        for (ReactionWaiter waiter : waiters) {
+            waiter.using(this);
+            waiter.useHandler(handlerKey, handler, payload.applyAsLong(waiter));
+        }
+        return addAll(waiters);
+    }
+
+    /**
+     * Deactivates all waiters that observe the given message.
+     *
+     * @param messageId       the id of the message
+     * @param removeReactions {@code true} if the reactions of the message should be removed as well
+     * @return the amount of deactivated waiters
+     */
+    public int removeByMessage(long messageId, boolean removeReactions) {
+        List<ReactionWaiter> waiters = new ArrayList<>();
+        for (Set<ReactionWaiter> bucket : registry.getAll(messageId)) {
+            waiters.addAll(bucket);
         }
-        if (removeReactions && waiter.getMessage() != null) {
-            waiter.getMessage().clearReactions().queue();
+        return removeAll(waiters, removeReactions);
+    }
+
+    /**
+     * Deactivates all waiters that observe a message of the given channel or are limited to it with
+     * {@link ReactionWaiter#inChannel(long)}. This has to look at every waiter of this listener unless no waiter was
+     * bound to the channel, so it's meant for rare bulk operations.
+     *
+     * @param channelId       the id of the channel
+     * @param removeReactions {@code true} if the reactions of the messages should be removed as well
+     * @return the amount of deactivated waiters
+     */
+    public int removeByChannel(long channelId, boolean removeReactions) {
+        // most channels never had a waiter, they don't need a scan of all waiters
+        if (!registry.mightBeBoundTo(channelId)) {
+            return 0;
         }
+        return removeMatching(channelId, waiter -> waiter.getChannelIdLong() == channelId
+                || waiter.getFilter().getChannelId() == channelId, removeReactions);
     }
 
-    static void removeReactionWaiter(ReactionWaiter waiter, long delay, TimeUnit timeUnit) {
-        scheduler.schedule(() -> {
-            removeReactionWaiter(waiter, removeReactions);
-        }, delay, timeUnit);
+    /**
+     * Deactivates all waiters that are bound to the given guild or are limited to it with
+     * {@link ReactionWaiter#inGuild(long)}. This has to look at every waiter of this listener unless no waiter was
+     * bound to the guild, so it's meant for rare bulk operations.
+     *
+     * @param guildId         the id of the guild
+     * @param removeReactions {@code true} if the reactions of the messages should be removed as well
+     * @return the amount of deactivated waiters
+     */
+    public int removeByGuild(long guildId, boolean removeReactions) {
+        if (!registry.mightBeBoundTo(guildId)) {
+            return 0;
+        }
+        return removeMatching(guildId, waiter -> waiter.getGuildIdLong() == guildId
+                || waiter.getFilter().getGuildId() == guildId, removeReactions);
+    }
+
+    /**
+     * Deactivates all waiters that only accept the given member. This has to look at every waiter of this listener, so
+     * it's meant for rare bulk operations.
+     *
+     * @param guildId         the id of the guild of the member
+     * @param userId          the id of the member
+     * @param removeReactions {@code true} if the reactions of the messages should be removed as well
+     * @return the amount of deactivated waiters
+     */
+    public int removeByMember(long guildId, long userId, boolean removeReactions) {
+        return removeMatching(userId, waiter -> waiter.getGuildIdLong() == guildId && waiter.getUserIdLong() == userId, removeReactions);
+    }
+
+    /**
+     * Get the ratio of reaction events that passed the pre-filter of this listener. Events that are rejected by the
+     * pre-filter can't match any waiter and are discarded without looking at the waiters at all.
+     *
+     * @return the ratio of passed events between {@code 0} and {@code 1}, or {@code 0} if no event was received yet
+     */
+    public double getPrefilterHitRatio() {
+        long passed = prefilterPassed.sum();
+        long total = passed + prefilterRejected.sum();
+        return total == 0 ? 0 : (double) passed / total;
     }
 
     /**
      * Set this to {@code true} if all reactions of a message should be removed when the waiter gets unregistered.
+     * Use {@link #setCleanupMode(CleanupMode)} to only remove the reactions of the bot.
      *
      * @param removeReactions {@code true} if all reactions of a message should be removed
      */
     public void setRemoveReactions(boolean removeReactions) {
-        ReactionListener.removeReactions = removeReactions;
+        this.removeReactions = removeReactions;
+    }
+
+    ReactionHandler getHandler(String key) {
+        return handlers.get(key);
+    }
+
+    ScheduledExecutorService getScheduler() {
+        return scheduler;
+    }
+
+    // batches flushed by their time window are delivered where the consumers would run anyway
+    Executor getDeliveryExecutor() {
+        AsyncDispatcher asyncDispatcher = dispatcher;
+        return asyncDispatcher == null ? ForkJoinPool.commonPool() : asyncDispatcher.getExecutor();
+    }
+
+    long getPendingCleanups() {
+        return cleaner.getQueued();
+    }
+
+    private void bindMetrics(WaiterMetrics metrics) {
+        this.metrics = metrics;
+        cleaner.setMetrics(metrics);
+        metrics.bindTo(this);
+    }
+
+    void add(ReactionWaiter waiter) {
+        checkRunning();
+        if (registry.add(waiter)) {
+            metrics.onRegistered();
+            if (!track(waiter)) {
+                return;
+            }
+        }
+        long idleTimeout = waiter.getIdleTimeout();
+        boolean scheduled;
+        if (idleTimeout != 0) {
+            scheduled = schedule(waiter, idleTimeout, TimeUnit.NANOSECONDS);
+        } else {
+            scheduled = autoRemove && schedule(waiter, delay, timeUnit);
+        }
+        if (!scheduled) {
+            save(waiter);
+        }
+    }
+
+    private int addAll(Collection<ReactionWaiter> waiters) {
+        checkRunning();
+        List<ReactionWaiter> added = registry.addAll(waiters);
+        WaiterMetrics metrics = this.metrics;
+        for (int i = 0; i < added.size(); i++) {
+            metrics.onRegistered();
+            track(added.get(i));
+        }
+        boolean autoRemove = this.autoRemove;
+        long deadline = timingWheel.deadlineOf(delay, timeUnit);
+        long expiresAt = System.currentTimeMillis() + timeUnit.toMillis(delay);
+        for (ReactionWaiter waiter : waiters) {
+            // rejected by a capacity limit
+            if (!waiter.isRegistered()) {
+                continue;
+            }
+            if (waiter.getIdleTimeout() != 0) {
+                waiter.scheduleTimeout(timingWheel, waiter.getIdleTimeout(), TimeUnit.NANOSECONDS);
+            } else if (autoRemove) {
+                waiter.scheduleTimeout(timingWheel, deadline, expiresAt);
+            }
+            save(waiter);
+        }
+        return added.size();
+    }
+
+    private void checkRunning() {
+        if (shutdown.get()) {
+            throw new IllegalStateException("The listener was shut down!");
+        }
+    }
+
+    // the record stays in the store, so the waiter gets restored after a restart
+    private void discard(ReactionWaiter waiter) {
+        waiter.cancelTimeout();
+        if (!registry.remove(waiter)) {
+            return;
+        }
+        metrics.onUnregistered();
+        CapacityTracker capacity = this.capacity;
+        if (capacity != null) {
+            capacity.remove(waiter);
+        }
+        if (waiter.getFuture() != null) {
+            waiter.getFuture().completeExceptionally(new CancellationException("The listener was shut down"));
+        }
+    }
+
+    private boolean isIdle() {
+        AsyncDispatcher asyncDispatcher = dispatcher;
+        return inFlight.sum() == 0 && (asyncDispatcher == null || asyncDispatcher.isIdle());
+    }
+
+    private static boolean pause(long deadline) throws InterruptedException {
+        long remaining = deadline - System.nanoTime();
+        if (remaining <= 0) {
+            return false;
+        }
+        TimeUnit.NANOSECONDS.sleep(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(10)));
+        return true;
+    }
+
+    private static CapacityTracker capacityOf(int globalLimit, int guildLimit, int memberLimit, EvictionPolicy policy) {
+        if (globalLimit == 0 && guildLimit == 0 && memberLimit == 0) {
+            return null;
+        }
+        return new CapacityTracker(globalLimit, guildLimit, memberLimit, policy);
+    }
+
+    // the waiters to evict are collected under the lock of the tracker, but deactivated after it got released
+    private boolean track(ReactionWaiter waiter) {
+        CapacityTracker capacity = this.capacity;
+        if (capacity == null) {
+            return true;
+        }
+        List<ReactionWaiter> evicted = new ArrayList<>(0);
+        boolean accepted = capacity.add(waiter, evicted);
+        for (ReactionWaiter victim : evicted) {
+            evict(victim, removeReactions);
+        }
+        if (!accepted) {
+            // the reactions belong to whoever set up the message, a rejected waiter leaves them alone
+            evict(waiter, false);
+        }
+        return accepted;
+    }
+
+    private void evict(ReactionWaiter waiter, boolean removeReactions) {
+        if (!unregister(waiter, removeReactions)) {
+            return;
+        }
+        metrics.onEvicted();
+        if (waiter.getFuture() != null) {
+            waiter.getFuture().completeExceptionally(new CancellationException("The waiter was evicted by a capacity limit"));
+        }
+        Runnable callback = waiter.getEvictionCallback();
+        if (callback != null) {
+            notifyEviction(ignored -> callback.run(), waiter);
+        }
+        notifyEviction(evictionListener, waiter);
+    }
+
+    private static void notifyEviction(Consumer<ReactionWaiter> callback, ReactionWaiter waiter) {
+        if (callback == null) {
+            return;
+        }
+        try {
+            callback.accept(waiter);
+        } catch (RuntimeException e) {
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+        }
+    }
+
+    void remove(ReactionWaiter waiter, boolean removeReactions) {
+        if (unregister(waiter, removeReactions) && waiter.getFuture() != null) {
+            waiter.getFuture().cancel(false);
+        }
+    }
+
+    // an id of 0 means "not bound", which must not match every unbound waiter
+    private int removeMatching(long id, Predicate<ReactionWaiter> predicate, boolean removeReactions) {
+        if (id == 0) {
+            return 0;
+        }
+        return removeAll(registry.collect(predicate), removeReactions);
+    }
+
+    private int removeAll(List<ReactionWaiter> waiters, boolean removeReactions) {
+        int removed = 0;
+        for (ReactionWaiter waiter : waiters) {
+            // a waiter with multiple emotes is contained multiple times, but only the first removal succeeds
+            if (unregister(waiter, removeReactions)) {
+                removed++;
+                if (waiter.getFuture() != null) {
+                    waiter.getFuture().cancel(false);
+                }
+            }
+        }
+        return removed;
+    }
+
+    private void expire(ReactionWaiter waiter) {
+        if (!unregister(waiter, removeReactions)) {
+            return;
+        }
+        metrics.onExpired();
+        if (waiter.getFuture() != null) {
+            waiter.getFuture().completeExceptionally(new TimeoutException("The waiter expired before a matching reaction was added"));
+        }
+    }
+
+    private boolean unregister(ReactionWaiter waiter, boolean removeReactions) {
+        waiter.cancelTimeout();
+        if (!registry.remove(waiter)) {
+            return false;
+        }
+        metrics.onUnregistered();
+        CapacityTracker capacity = this.capacity;
+        if (capacity != null) {
+            capacity.remove(waiter);
+        }
+        WaiterStore store = this.store;
+        long recordId = waiter.getRecordId();
+        if (store != null && recordId != 0) {
+            store.remove(recordId);
+        }
+        if (removeReactions && waiter.getMessageIdLong() != 0) {
+            cleaner.clean(waiter, waiter.getEmotes());
+        }
+        return true;
+    }
+
+    void remove(ReactionWaiter waiter, long delay, TimeUnit timeUnit) {
+        schedule(waiter, delay, timeUnit);
+    }
+
+    // the record is saved again whenever the deadline changes
+    private boolean schedule(ReactionWaiter waiter, long delay, TimeUnit timeUnit) {
+        if (!waiter.scheduleTimeout(timingWheel, delay, timeUnit)) {
+            return false;
+        }
+        save(waiter);
+        return true;
+    }
+
+    private void save(ReactionWaiter waiter) {
+        WaiterStore store = this.store;
+        String handlerKey = waiter.getHandlerKey();
+        if (store == null || handlerKey == null || !waiter.isRegistered()) {
+            return;
+        }
+        long recordId = waiter.assignRecordId(store);
+        store.save(new WaiterRecord(recordId, waiter.getGuildIdLong(), waiter.getChannelIdLong(),
+                waiter.getMessageIdLong(), waiter.getUserIdLong(), waiter.getEmotes(), waiter.getExpiresAt(), handlerKey,
+                waiter.getPayload()));
+        // a waiter that got unregistered meanwhile might have removed its record before it was saved again
+        if (!waiter.isRegistered()) {
+            store.remove(recordId);
+        }
+    }
+
+    // the store is read once, the records of every shard are restored once that shard gets attached
+    private void restore(JDA jda, WaiterStore store) {
+        JDA.ShardInfo shardInfo = jda.getShardInfo();
+        List<WaiterRecord> records;
+        synchronized (this) {
+            if (pendingRecords == null) {
+                Map<Integer, List<WaiterRecord>> pending = new HashMap<>();
+                List<WaiterRecord> unbound = new ArrayList<>();
+                store.load(record -> {
+                    long guildId = record.getGuildIdLong();
+                    if (guildId == 0) {
+                        unbound.add(record);
+                    } else {
+                        // the shard id formula of Discord, the guild id carries the creation timestamp above bit 22
+                        int shardId = (int) ((guildId >>> 22) % shardInfo.getShardTotal());
+                        pending.computeIfAbsent(shardId, key -> new ArrayList<>()).add(record);
+                    }
+                });
+                pendingRecords = pending;
+                restore(jda, store, unbound);
+            }
+            records = pendingRecords.remove(shardInfo.getShardId());
+        }
+        if (records != null) {
+            restore(jda, store, records);
+        }
+    }
+
+    // restores the waiters without any REST request, the JDA is only needed to resolve entities later on
+    private void restore(JDA jda, WaiterStore store, List<WaiterRecord> records) {
+        Function<String, Consumer<ReactionEvent>> resolver = this.resolver;
+        long now = System.currentTimeMillis();
+        for (WaiterRecord record : records) {
+            ReactionHandler handler = handlers.get(record.getHandlerKey());
+            Consumer<ReactionEvent> consumer = null;
+            if (handler == null) {
+                consumer = resolver == null ? null : resolver.apply(record.getHandlerKey());
+                if (consumer == null) {
+                    continue;
+                }
+            }
+            if (record.getExpiresAt() != 0 && record.getExpiresAt() <= now) {
+                store.remove(record.getId());
+                continue;
+            }
+            ReactionWaiter waiter = new ReactionWaiter(jda, record.getGuildIdLong(), record.getChannelIdLong(),
+                    record.getMessageIdLong(), record.getUserIdLong(), record.getEmotes());
+            waiter.restore(record.getId(), record.getHandlerKey(), record.getPayload(), handler, consumer);
+            waiter.using(this);
+            if (!registry.add(waiter)) {
+                continue;
+            }
+            metrics.onRegistered();
+            if (!track(waiter)) {
+                continue;
+            }
+            if (record.getExpiresAt() != 0) {
+                waiter.scheduleTimeout(timingWheel, record.getExpiresAt() - now, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void flushStore() {
+        WaiterStore store = this.store;
+        if (store == null) {
+            return;
+        }
+        try {
+            store.flush();
+        } catch (RuntimeException ignored) {
+            // an exception would suppress all further flushes, the next one will retry
+        }
+    }
+
+    @Override
+    public void onGuildMessageDelete(@NotNull GuildMessageDeleteEvent event) {
+        if (registry.mightMatch(event.getMessageIdLong(), 0, 0, null)) {
+            removeByMessage(event.getMessageIdLong(), false);
+        }
+    }
+
+    @Override
+    public void onTextChannelDelete(@NotNull TextChannelDeleteEvent event) {
+        removeByChannel(event.getChannel().getIdLong(), false);
+    }
+
+    @Override
+    public void onGuildLeave(@NotNull GuildLeaveEvent event) {
+        removeByGuild(event.getGuild().getIdLong(), false);
     }
 
     @Override
@@ -107,21 +976,507 @@ public class ReactionListener extends ListenerAdapter {
         if (event.getUser().isBot()) {
             return;
         }
-        waiters.forEach(waiter -> waiter.getEmotes().forEach(emote -> {
-            if (!emote.equals(event.getReactionEmote().getName())) {
-                return;
+        handle(event, event.getUserIdLong(), event.getReactionEmote(), ReactionAction.ADD);
+    }
+
+    @Override
+    public void onGuildMessageReactionRemove(@NotNull GuildMessageReactionRemoveEvent event) {
+        // the user of a removal isn't guaranteed to be cached
+        User user = event.getUser();
+        if (user != null && user.isBot()) {
+            return;
+        }
+        handle(event, event.getUserIdLong(), event.getReactionEmote(), ReactionAction.REMOVE);
+    }
+
+    @Override
+    public void onGuildMessageReactionRemoveEmote(@NotNull GuildMessageReactionRemoveEmoteEvent event) {
+        handle(event, 0, event.getReactionEmote(), ReactionAction.REMOVE_EMOTE);
+    }
+
+    @Override
+    public void onGuildMessageReactionRemoveAll(@NotNull GuildMessageReactionRemoveAllEvent event) {
+        WaiterMetrics metrics = this.metrics;
+        if (!prefilter(registry.mightMatch(event.getMessageIdLong(), 0, 0, null), metrics)) {
+            return;
+        }
+        long channelId = event.getChannel().getIdLong();
+        long guildId = event.getGuild().getIdLong();
+        boolean limited = !acquire(guildId, 0, metrics);
+        long start = metrics == WaiterMetrics.NOOP ? 0 : System.nanoTime();
+        Collection<Set<ReactionWaiter>> buckets = registry.getAll(event.getMessageIdLong());
+        int matches = 0;
+        if (buckets.size() == 1) {
+            matches = dispatch(buckets.iterator().next(), event, channelId, guildId, 0, null, ReactionAction.REMOVE_ALL, limited, 0);
+        } else if (!buckets.isEmpty()) {
+            // a waiter with multiple emotes sits in multiple buckets, but must only receive the event once
+            Set<ReactionWaiter> waiters = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Set<ReactionWaiter> bucket : buckets) {
+                waiters.addAll(bucket);
             }
+            matches = dispatch(waiters, event, channelId, guildId, 0, null, ReactionAction.REMOVE_ALL, limited, 0);
+        }
+        if (metrics != WaiterMetrics.NOOP) {
+            metrics.onDispatch(System.nanoTime() - start, matches);
+        }
+    }
 
-            if ((waiter.getMessage() != null) && (waiter.getMessage().getIdLong() != event.getMessageIdLong())) {
-                return;
+    private void handle(GenericGuildMessageEvent event, long userId, MessageReaction.ReactionEmote reactionEmote, ReactionAction action) {
+        WaiterMetrics metrics = this.metrics;
+        // an emote that no waiter ever listened for has no key and can't match anything
+        String emote = EmoteKeys.lookup(reactionEmote);
+        long channelId = event.getChannel().getIdLong();
+        long guildId = event.getGuild().getIdLong();
+        if (!prefilter(emote != null && registry.mightMatch(event.getMessageIdLong(), channelId, guildId, emote), metrics)) {
+            return;
+        }
+        // removals still reach the waiters that are exempt from the rate limits
+        boolean limited = !acquire(guildId, userId, metrics);
+        if (limited && action == ReactionAction.ADD) {
+            return;
+        }
+        long start = metrics == WaiterMetrics.NOOP ? 0 : System.nanoTime();
+        int matches = dispatch(registry.get(event.getMessageIdLong(), emote), event, channelId, guildId, userId, emote, action, limited, 0);
+        matches = dispatch(registry.getByChannel(channelId, emote), event, channelId, guildId, userId, emote, action, limited, matches);
+        matches = dispatch(registry.getByGuild(guildId, emote), event, channelId, guildId, userId, emote, action, limited, matches);
+        matches = dispatch(registry.getWildcard(emote), event, channelId, guildId, userId, emote, action, limited, matches);
+        if (metrics != WaiterMetrics.NOOP) {
+            metrics.onDispatch(System.nanoTime() - start, matches);
+        }
+    }
+
+    private boolean prefilter(boolean passed, WaiterMetrics metrics) {
+        (passed ? prefilterPassed : prefilterRejected).increment();
+        metrics.onPrefilter(passed);
+        return passed;
+    }
+
+    // the guild is checked first, so a user doesn't lose a token for an event the guild limit drops anyway
+    private boolean acquire(long guildId, long userId, WaiterMetrics metrics) {
+        RateLimit guildRateLimit = this.guildRateLimit;
+        RateLimit userRateLimit = userId == 0 ? null : this.userRateLimit;
+        if (guildRateLimit == null && userRateLimit == null) {
+            return true;
+        }
+        long now = System.nanoTime();
+        if (guildRateLimit != null && !guildBuckets.computeIfAbsent(guildId, key -> guildRateLimit.newBucket()).tryAcquire(now)) {
+            metrics.onRateLimited();
+            return false;
+        }
+        if (userRateLimit != null && !userBuckets.computeIfAbsent(userId, key -> userRateLimit.newBucket()).tryAcquire(now)) {
+            metrics.onRateLimited();
+            return false;
+        }
+        return true;
+    }
+
+    // a full bucket behaves like a new one, so dropping it bounds the maps to the recently active users and guilds
+    private void purgeBuckets() {
+        long now = System.nanoTime();
+        userBuckets.values().removeIf(bucket -> bucket.isFull(now));
+        guildBuckets.values().removeIf(bucket -> bucket.isFull(now));
+    }
+
+    // the ReactionEvent is only created for the first matching waiter and then shared by all others
+    private int dispatch(Set<ReactionWaiter> waiters, GenericGuildMessageEvent event, long channelId, long guildId, long userId, String emote,
+                         ReactionAction action, boolean limited, int matches) {
+        ReactionEvent reactionEvent = null;
+        for (ReactionWaiter waiter : waiters) {
+            // the bucket is weakly consistent, skip waiters that got removed while iterating
+            if (!waiter.isRegistered()) {
+                continue;
             }
 
-            if ((waiter.getMember() != null) && (!waiter.getMember().equals(event.getMember()))) {
-                return;
+            if (action != ReactionAction.ADD && !waiter.isListeningForRemovals()) {
+                continue;
             }
 
-            waiter.getConsumer().accept(new ReactionEvent(event, emote));
-        }));
+            boolean exempt = action != ReactionAction.ADD && waiter.isRemovalsExempt();
+            if (limited && !exempt) {
+                continue;
+            }
+
+            // bulk removals have no user and affect the reactions of every user
+            if ((waiter.getUserIdLong() != 0) && (userId != 0) && (waiter.getUserIdLong() != userId)) {
+                continue;
+            }
+
+            // the user id alone would also match the same user in any other guild
+            if (waiter.getGuildIdLong() != 0 && waiter.getGuildIdLong() != guildId) {
+                continue;
+            }
+
+            // the filters are evaluated cheapest first, the event is only created if a filter needs it
+            WaiterFilter filter = waiter.getFilter();
+            if (filter != WaiterFilter.NONE) {
+                if (!filter.matches(channelId, guildId, userId)) {
+                    continue;
+                }
+                if (filter.needsEvent()) {
+                    if (reactionEvent == null) {
+                        reactionEvent = new ReactionEvent(event, emote, action);
+                    }
+                    if (!filter.matches(reactionEvent)) {
+                        continue;
+                    }
+                }
+            }
+
+            TokenBucket rateLimiter = waiter.getRateLimiter();
+            if (rateLimiter != null && !exempt && !rateLimiter.tryAcquire(System.nanoTime())) {
+                metrics.onRateLimited();
+                continue;
+            }
+
+            // one shot waiters only accept the event that manages to unregister them, the reactions of the other users
+            // stay on the message
+            if (waiter.getFuture() != null && !unregister(waiter, false)) {
+                continue;
+            }
+
+            if (reactionEvent == null) {
+                reactionEvent = new ReactionEvent(event, emote, action);
+            }
+            matches++;
+            if (waiter.touch(timingWheel)) {
+                save(waiter);
+            }
+            CapacityTracker capacity = this.capacity;
+            if (capacity != null) {
+                capacity.touch(waiter);
+            }
+            AsyncDispatcher asyncDispatcher = dispatcher;
+            if (asyncDispatcher == null) {
+                invoke(waiter, reactionEvent);
+            } else {
+                asyncDispatcher.dispatch(waiter, reactionEvent);
+            }
+        }
+        return matches;
     }
-}
 
+    // an open batch counts as in flight until it got delivered, see EventBatcher
+    void batchOpened() {
+        inFlight.increment();
+    }
+
+    void batchDelivered() {
+        inFlight.decrement();
+    }
+
+    // counted as in flight, so a shutdown can wait for running consumers
+    void invoke(ReactionWaiter waiter, ReactionEvent event) {
+        WaiterMetrics metrics = this.metrics;
+        inFlight.increment();
+        long start = metrics == WaiterMetrics.NOOP ? 0 : System.nanoTime();
+        try {
+            deliver(waiter, event);
+        } finally {
+            inFlight.decrement();
+            if (metrics != WaiterMetrics.NOOP) {
+                metrics.onConsumerExecuted(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private static void deliver(ReactionWaiter waiter, ReactionEvent event) {
+        ReactionHandler handler = waiter.getHandler();
+        if (handler == null) {
+            waiter.getConsumer().accept(event);
+        } else {
+            handler.handle(waiter, event, waiter.getPayload());
+        }
+    }
+
+    /**
+     * Builder for {@link ReactionListener} instances. Every instance created by this builder has its own waiters,
+     * configuration and scheduler.
+     */
+    public static class Builder {
+
+        private ScheduledExecutorService scheduler;
+        private Executor executor;
+        private int queueCapacity = 1024;
+        private OverflowPolicy policy = OverflowPolicy.BLOCK;
+        private boolean autoRemove = true;
+        private boolean removeReactions = true;
+        private long delay = 5;
+        private TimeUnit timeUnit = TimeUnit.MINUTES;
+        private CleanupMode cleanupMode = CleanupMode.ALL;
+        private long cleanupInterval = 250;
+        private TimeUnit cleanupTimeUnit = TimeUnit.MILLISECONDS;
+        private WaiterMetrics metrics = WaiterMetrics.NOOP;
+        private RateLimit userRateLimit;
+        private RateLimit guildRateLimit;
+        private WaiterStore store;
+        private Function<String, Consumer<ReactionEvent>> resolver;
+        private int expectedMessages;
+        private int globalLimit;
+        private int guildLimit;
+        private int memberLimit;
+        private EvictionPolicy evictionPolicy = EvictionPolicy.REJECT;
+        private Consumer<ReactionWaiter> evictionListener;
+        private final Map<String, ReactionHandler> handlers = new HashMap<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Set the scheduler that expires waiters and paces reaction removals. By default every listener creates its
+         * own single threaded scheduler with a daemon thread. A scheduler set here isn't shut down by
+         * {@link ReactionListener#shutdown(boolean, long, TimeUnit)}.
+         *
+         * @param scheduler the {@code ScheduledExecutorService} to use
+         * @return the current instance to use fluent interface
+         */
+        public Builder setScheduler(@Nonnull ScheduledExecutorService scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Set an {@link Executor} that will call the consumers of the waiters instead of the JDA event thread.
+         *
+         * @param executor the {@link Executor} to call the consumers on or {@code null}
+         * @return the current instance to use fluent interface
+         * @see ReactionListener#setDispatchExecutor(Executor)
+         */
+        public Builder setDispatchExecutor(@Nullable Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        /**
+         * Set an {@link Executor} that will call the consumers of the waiters instead of the JDA event thread.
+         *
+         * @param executor      the {@link Executor} to call the consumers on or {@code null}
+         * @param queueCapacity the maximum amount of events queued per waiter
+         * @param policy        the {@link OverflowPolicy} to apply if the queue of a waiter is full
+         * @return the current instance to use fluent interface
+         * @see ReactionListener#setDispatchExecutor(Executor, int, OverflowPolicy)
+         */
+        public Builder setDispatchExecutor(@Nullable Executor executor, int queueCapacity, @Nonnull OverflowPolicy policy) {
+            this.executor = executor;
+            this.queueCapacity = queueCapacity;
+            this.policy = policy;
+            return this;
+        }
+
+        /**
+         * Set this to {@code true} to automatically remove waiters after a given set of time.
+         *
+         * @param autoRemove {@code true} if waiters should be removed automatically
+         * @return the current instance to use fluent interface
+         * @see ReactionListener#setAutoRemove(boolean)
+         */
+        public Builder setAutoRemove(boolean autoRemove) {
+            this.autoRemove = autoRemove;
+            return this;
+        }
+
+        /**
+         * Set the time interval after which waiters will be removed automatically.
+         *
+         * @param delay    the time from now to deactivate the waiter
+         * @param timeUnit the time unit of the delay parameter
+         * @return the current instance to use fluent interface
+         * @see ReactionListener#setAutoRemoveDelay(long, TimeUnit)
+         */
+        public Builder setAutoRemoveDelay(long delay, @Nonnull TimeUnit timeUnit) {
+            this.delay = delay;
+            this.timeUnit = timeUnit;
+            return this;
+        }
+
+        /**
+         * Set this to {@code true} if the reactions of a message should be removed when the waiter gets unregistered.
+         *
+         * @param removeReactions {@code true} if the reactions of a message should be removed
+         * @return the current instance to use fluent interface
+         * @see ReactionListener#setRemoveReactions(boolean)
+         */
+        public Builder setRemoveReactions(boolean removeReactions) {
+            this.removeReactions = removeReactions;
+            return this;
+        }
+
+        /**
+         * Set which reactions get removed when a waiter gets unregistered.
+         *
+         * @param cleanupMode the {@link CleanupMode} to use
+         * @return the current instance to use fluent interface
+         * @see ReactionListener#setCleanupMode(CleanupMode)
+         */
+        public Builder setCleanupMode(@Nonnull CleanupMode cleanupMode) {
+            this.cleanupMode = cleanupMode;
+            return this;
+        }
+
+        /**
+         * Set the time to wait between two reaction removals in the same channel.
+         *
+         * @param interval the time to wait between two removals
+         * @param timeUnit the time unit of the interval parameter
+         * @return the current instance to use fluent interface
+         * @see ReactionListener#setCleanupInterval(long, TimeUnit)
+         */
+        public Builder setCleanupInterval(long interval, @Nonnull TimeUnit timeUnit) {
+            this.cleanupInterval = interval;
+            this.cleanupTimeUnit = timeUnit;
+            return this;
+        }
+
+        /**
+         * Set the {@link WaiterMetrics} the listener reports to.
+         *
+         * @param metrics the {@link WaiterMetrics} to report to
+         * @return the current instance to use fluent interface
+         * @see ReactionListener#setMetrics(WaiterMetrics)
+         */
+        public Builder setMetrics(@Nonnull WaiterMetrics metrics) {
+            this.metrics = metrics;
+            return this;
+        }
+
+        /**
+         * Limits how often the consumers get called for the reactions of a single user.
+         *
+         * @param rateLimit the {@link RateLimit} per user or {@code null}
+         * @return the current instance to use fluent interface
+         * @see ReactionListener#setUserRateLimit(RateLimit)
+         */
+        public Builder setUserRateLimit(@Nullable RateLimit rateLimit) {
+            this.userRateLimit = rateLimit;
+            return this;
+        }
+
+        /**
+         * Limits how often the consumers get called for the reactions within a single guild.
+         *
+         * @param rateLimit the {@link RateLimit} per guild or {@code null}
+         * @return the current instance to use fluent interface
+         * @see ReactionListener#setGuildRateLimit(RateLimit)
+         */
+        public Builder setGuildRateLimit(@Nullable RateLimit rateLimit) {
+            this.guildRateLimit = rateLimit;
+            return this;
+        }
+
+        /**
+         * Limits the amount of waiters the listener holds.
+         *
+         * @param globalLimit the maximum amount of waiters
+         * @param guildLimit  the maximum amount of waiters per guild
+         * @param memberLimit the maximum amount of waiters per member
+         * @param policy      the {@link EvictionPolicy} to apply if a limit is reached
+         * @return the current instance to use fluent interface
+         * @see ReactionListener#setCapacity(int, int, int, EvictionPolicy)
+         */
+        public Builder setCapacity(int globalLimit, int guildLimit, int memberLimit, @Nonnull EvictionPolicy policy) {
+            this.globalLimit = globalLimit;
+            this.guildLimit = guildLimit;
+            this.memberLimit = memberLimit;
+            this.evictionPolicy = policy;
+            return this;
+        }
+
+        /**
+         * Set the amount of messages that are expected to be watched at the same time. Reactions on other messages
+         * are rejected by a Bloom filter that needs 16 bytes per expected message and is only allocated once the
+         * first waiter for a message gets registered. Watching more messages still works, but lets more reactions
+         * through to the index. Defaults to the global capacity limit or to 4096 if there is none.
+         *
+         * @param expectedMessages the amount of messages that are expected to be watched at the same time
+         * @return the current instance to use fluent interface
+         */
+        public Builder setExpectedMessages(int expectedMessages) {
+            this.expectedMessages = expectedMessages;
+            return this;
+        }
+
+        /**
+         * Set a callback that gets called for every waiter the listener evicts or rejects because of a capacity limit.
+         *
+         * @param evictionListener the callback to call on eviction or {@code null}
+         * @return the current instance to use fluent interface
+         * @see ReactionListener#setEvictionListener(Consumer)
+         */
+        public Builder setEvictionListener(@Nullable Consumer<ReactionWaiter> evictionListener) {
+            this.evictionListener = evictionListener;
+            return this;
+        }
+
+        /**
+         * Registers a {@link ReactionHandler} at the listener.
+         *
+         * @param key     the key to register the handler under
+         * @param handler the {@link ReactionHandler} to register
+         * @return the current instance to use fluent interface
+         * @see ReactionListener#registerHandler(String, ReactionHandler)
+         */
+        public Builder registerHandler(@Nonnull String key, @Nonnull ReactionHandler handler) {
+            handlers.put(key, handler);
+            return this;
+        }
+
+        /**
+         * Set the {@link WaiterStore} the listener persists waiters in.
+         *
+         * @param store the {@link WaiterStore} to use
+         * @return the current instance to use fluent interface
+         * @see ReactionListener#setStore(WaiterStore)
+         */
+        public Builder setStore(@Nonnull WaiterStore store) {
+            this.store = store;
+            return this;
+        }
+
+        /**
+         * Set the {@link WaiterStore} the listener persists waiters in.
+         *
+         * @param store    the {@link WaiterStore} to use
+         * @param resolver the function that resolves the key of a stored waiter to its consumer
+         * @return the current instance to use fluent interface
+         * @see ReactionListener#setStore(WaiterStore, Function)
+         */
+        public Builder setStore(@Nonnull WaiterStore store, @Nonnull Function<String, Consumer<ReactionEvent>> resolver) {
+            this.store = store;
+            this.resolver = resolver;
+            return this;
+        }
+
+        /**
+         * Creates the configured {@link ReactionListener}. The listener still has to be attached to a JDA.
+         *
+         * @return the configured {@link ReactionListener}
+         * @throws IllegalArgumentException if the queue capacity is less than one or a capacity limit or the amount of
+         *                                  expected messages is negative
+         * @see ReactionListener#attach(JDA)
+         */
+        public ReactionListener build() {
+            int expected = expectedMessages != 0 ? expectedMessages
+                    : globalLimit > 0 ? globalLimit : WaiterRegistry.DEFAULT_EXPECTED_MESSAGES;
+            ReactionListener listener = scheduler == null
+                    ? new ReactionListener(newScheduler(), true, expected)
+                    : new ReactionListener(scheduler, false, expected);
+            listener.dispatcher = executor == null ? null : new AsyncDispatcher(listener, executor, queueCapacity, policy);
+            listener.autoRemove = autoRemove;
+            listener.removeReactions = removeReactions;
+            listener.delay = delay;
+            listener.timeUnit = timeUnit;
+            listener.userRateLimit = userRateLimit;
+            listener.guildRateLimit = guildRateLimit;
+            listener.store = store;
+            listener.resolver = resolver;
+            listener.handlers.putAll(handlers);
+            listener.capacity = capacityOf(globalLimit, guildLimit, memberLimit, evictionPolicy);
+            listener.evictionListener = evictionListener;
+            listener.cleaner.setMode(cleanupMode);
+            listener.cleaner.setInterval(cleanupInterval, cleanupTimeUnit);
+            if (metrics != WaiterMetrics.NOOP) {
+                listener.bindMetrics(metrics);
+            }
+            return listener;
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package de.kaktushose.discord.reactionwaiter;
+
+import net.dv8tion.jda.api.entities.Emote;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.MessageEmbed;
+import net.dv8tion.jda.api.entities.MessageReaction;
+import net.dv8tion.jda.api.requests.RestAction;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * An interactive menu on a single message that is controlled with reactions. A menu can have pages, which are switched
+ * with a previous and a next reaction, and any amount of buttons, e.g. for a role menu. The whole menu is driven by a
+ * single {@link ReactionWaiter}, no matter how often the page gets switched.
+ *
+ * <p>Switching the page edits the message in place. Pages are rendered once and then cached. While an edit is in
+ * flight, further page switches only update the target page and the latest one is shown once the edit completed, thus
+ * fast clicking never queues up more than one edit. The page controls react to added and removed reactions alike, so a
+ * user can click them repeatedly without the bot having to remove the reaction of the user. Buttons only react to added
+ * reactions.
+ *
+ * <p>When the menu gets started, the missing reactions are added one after another, each one only after the previous
+ * one succeeded. This keeps them in order and doesn't flood the rate limit of the channel with parallel requests.
+ * Reactions the bot already added to the message are skipped.
+ *
+ * <pre>{@code
+ * ReactionMenu menu = new ReactionMenu(message, pageCount, page -> renderPage(page))
+ *         .addButton(EmoteType.CROSSMARK.unicode, event -> event.getChannel().deleteMessageById(event.getMessageId()).queue())
+ *         .setTimeout(2, TimeUnit.MINUTES);
+ * menu.start();
+ * }</pre>
+ *
+ * @author Kaktushose
+ * @version 3.0.0
+ * @since 3.0.0
+ */
+
+public class ReactionMenu {
+
+    private final Message message;
+    private final int pageCount;
+    private final IntFunction<MessageEmbed> renderer;
+    private final AtomicReferenceArray<MessageEmbed> pages;
+    // only modified before the menu gets started
+    private final Map<String, Consumer<ReactionEvent>> buttons = new LinkedHashMap<>();
+    private final AtomicInteger page = new AtomicInteger();
+    private final AtomicBoolean editing = new AtomicBoolean();
+    private volatile int shownPage;
+    private String previous = EmoteKeys.register(EmoteType.ARROW_BACKWARD.unicode);
+    private String next = EmoteKeys.register(EmoteType.ARROW_FORWARD.unicode);
+    private Member member;
+    private ReactionListener listener;
+    private long timeout;
+    private volatile ReactionWaiter waiter;
+
+    /**
+     * Creates a new menu without pages. Use {@link #addButton(String, Consumer)} to add the options of the menu.
+     *
+     * @param message the message that holds the menu
+     */
+    public ReactionMenu(@Nonnull Message message) {
+        this(message, 0, null);
+    }
+
+    /**
+     * Creates a new menu with the given pages. The message should already show the first page.
+     *
+     * @param message the message that holds the menu
+     * @param pages   the pages of the menu
+     */
+    public ReactionMenu(@Nonnull Message message, @Nonnull List<MessageEmbed> pages) {
+        this(message, pages.size(), new ArrayList<>(pages)::get);
+    }
+
+    /**
+     * Creates a new menu whose pages are rendered on demand. Every page is rendered at most once and then cached. The
+     * message should already show the first page, which can be obtained with {@link #getPage(int)}.
+     *
+     * @param message   the message that holds the menu
+     * @param pageCount the amount of pages
+     * @param renderer  the function that renders the page with the given index
+     */
+    public ReactionMenu(@Nonnull Message message, int pageCount, @Nullable IntFunction<MessageEmbed> renderer) {
+        this.message = message;
+        this.pageCount = pageCount;
+        this.renderer = renderer;
+        this.pages = new AtomicReferenceArray<>(Math.max(pageCount, 0));
+    }
+
+    /**
+     * Sets the emotes that switch to the previous and to the next page. The defaults are
+     * {@link EmoteType#ARROW_BACKWARD} and {@link EmoteType#ARROW_FORWARD}. This has to be called before the menu gets
+     * started.
+     *
+     * @param previous the emote that switches to the previous page
+     * @param next     the emote that switches to the next page
+     * @return the current instance to use fluent interface
+     * @throws IllegalArgumentException if a custom emote doesn't contain its id
+     */
+    public ReactionMenu setControls(@Nonnull String previous, @Nonnull String next) {
+        this.previous = EmoteKeys.register(previous);
+        this.next = EmoteKeys.register(next);
+        return this;
+    }
+
+    /**
+     * Adds a button to the menu. The action is called every time the emote gets added to the message. Buttons are
+     * added to the message after the page controls and in the order they were added to the menu. This has to be
+     * called before the menu gets started.
+     *
+     * @param emote  the emote of the button
+     * @param action the action to call when the button gets clicked
+     * @return the current instance to use fluent interface
+     * @throws IllegalArgumentException if a custom emote doesn't contain its id
+     */
+    public ReactionMenu addButton(@Nonnull String emote, @Nonnull Consumer<ReactionEvent> action) {
+        buttons.put(EmoteKeys.register(emote), action);
+        return this;
+    }
+
+    /**
+     * Only accepts reactions of the given member. By default every user can control the menu. This has to be called
+     * before the menu gets started.
+     *
+     * @param member the member that may control the menu
+     * @return the current instance to use fluent interface
+     */
+    public ReactionMenu restrictTo(@Nullable Member member) {
+        this.member = member;
+        return this;
+    }
+
+    /**
+     * Closes the menu once it wasn't used for the given time. Every click keeps the menu open for the full time
+     * again. By default the menu is removed like any other waiter of its {@link ReactionListener}. This has to be
+     * called before the menu gets started.
+     *
+     * @param timeout  the time without a click after which the menu gets closed
+     * @param timeUnit the time unit of the timeout parameter
+     * @return the current instance to use fluent interface
+     * @see ReactionWaiter#setIdleTimeout(long, TimeUnit)
+     */
+    public ReactionMenu setTimeout(long timeout, @Nonnull TimeUnit timeUnit) {
+        this.timeout = timeUnit.toNanos(timeout);
+        return this;
+    }
+
+    /**
+     * Binds this menu to the given {@link ReactionListener}. This has to be called before the menu gets started.
+     *
+     * @param listener the {@link ReactionListener} to register the menu at
+     * @return the current instance to use fluent interface
+     * @see ReactionWaiter#using(ReactionListener)
+     */
+    public ReactionMenu using(@Nonnull ReactionListener listener) {
+        this.listener = listener;
+        return this;
+    }
+
+    /**
+     * Starts the menu and adds the missing reactions to the message. Calling this on a running menu has no effect.
+     *
+     * @return the current instance to use fluent interface
+     */
+    public synchronized ReactionMenu start() {
+        if (waiter != null && waiter.isRegistered()) {
+            return this;
+        }
+        List<String> emotes = new ArrayList<>();
+        if (pageCount > 1) {
+            emotes.add(previous);
+            emotes.add(next);
+        }
+        emotes.addAll(buttons.keySet());
+        ReactionWaiter waiter = new ReactionWaiter(message, member, emotes).listenForRemovals(true);
+        if (timeout > 0) {
+            waiter.setIdleTimeout(timeout, TimeUnit.NANOSECONDS);
+        }
+        if (listener != null) {
+            waiter.using(listener);
+        }
+        this.waiter = waiter;
+        waiter.onEvent(this::handle);
+        addReactions(missing(emotes).iterator());
+        return this;
+    }
+
+    /**
+     * Closes the menu. The message keeps showing the current page.
+     *
+     * @param removeReactions {@code true} if this method should also remove the reactions from the message
+     * @return the current instance to use fluent interface
+     */
+    public ReactionMenu stop(boolean removeReactions) {
+        ReactionWaiter waiter = this.waiter;
+        if (waiter != null) {
+            waiter.stopWaiting(removeReactions);
+        }
+        return this;
+    }
+
+    /**
+     * Whether this menu is currently running.
+     *
+     * @return {@code true} if this menu is currently running
+     */
+    public boolean isRunning() {
+        ReactionWaiter waiter = this.waiter;
+        return waiter != null && waiter.isRegistered();
+    }
+
+    /**
+     * Switches to the given page. If an edit of the message is in flight, the page is shown once it completed.
+     *
+     * @param index the index of the page, starting at {@code 0}
+     * @return the current instance to use fluent interface
+     * @throws IndexOutOfBoundsException if the menu has no page with the given index
+     */
+    public ReactionMenu showPage(int index) {
+        if (index < 0 || index >= pageCount) {
+            throw new IndexOutOfBoundsException("Page " + index + " of " + pageCount);
+        }
+        page.set(index);
+        render();
+        return this;
+    }
+
+    /**
+     * Get the index of the page the menu is currently switched to. The message might still show the previous page if
+     * the edit is in flight.
+     *
+     * @return the index of the current page, starting at {@code 0}
+     */
+    public int getCurrentPage() {
+        return page.get();
+    }
+
+    /**
+     * Get the amount of pages of this menu.
+     *
+     * @return the amount of pages
+     */
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * Get the given page. The page is rendered on the first call and cached afterwards.
+     *
+     * @param index the index of the page, starting at {@code 0}
+     * @return the rendered page
+     * @throws IndexOutOfBoundsException if the menu has no page with the given index
+     */
+    public MessageEmbed getPage(int index) {
+        MessageEmbed embed = pages.get(index);
+        if (embed != null) {
+            return embed;
+        }
+        embed = renderer.apply(index);
+        // two threads might render the same page, but both show the one that got cached first
+        return pages.compareAndSet(index, null, embed) ? embed : pages.get(index);
+    }
+
+    private void handle(ReactionEvent event) {
+        ReactionAction action = event.getAction();
+        if (action != ReactionAction.ADD && action != ReactionAction.REMOVE) {
+            return;
+        }
+        String emote = event.getEmote();
+        if (pageCount > 1 && emote.equals(previous)) {
+            turn(-1);
+        } else if (pageCount > 1 && emote.equals(next)) {
+            turn(1);
+        } else if (action == ReactionAction.ADD) {
+            Consumer<ReactionEvent> button = buttons.get(emote);
+            if (button != null) {
+                button.accept(event);
+            }
+        }
+    }
+
+    private void turn(int delta) {
+        page.updateAndGet(current -> Math.floorMod(current + delta, pageCount));
+        render();
+    }
+
+    // only one edit is in flight, it shows the latest page once it completed
+    private void render() {
+        if (!editing.compareAndSet(false, true)) {
+            return;
+        }
+        int target = page.get();
+        if (target == shownPage) {
+            editing.set(false);
+            // the page might have changed after it was read, but before the flag was released
+            if (page.get() != target) {
+                render();
+            }
+            return;
+        }
+        message.editMessage(getPage(target)).queue(success -> {
+            shownPage = target;
+            editing.set(false);
+            render();
+        }, failure -> editing.set(false));
+    }
+
+    private Set<String> missing(List<String> emotes) {
+        Set<String> present = new HashSet<>();
+        for (MessageReaction reaction : message.getReactions()) {
+            if (reaction.isSelf()) {
+                String key = EmoteKeys.lookup(reaction.getReactionEmote());
+                if (key != null) {
+                    present.add(key);
+                }
+            }
+        }
+        Set<String> missing = new LinkedHashSet<>(emotes);
+        missing.removeAll(present);
+        return Collections.unmodifiableSet(missing);
+    }
+
+    // the next reaction is only added once the previous one succeeded, a failure most likely repeats for all others
+    private void addReactions(Iterator<String> emotes) {
+        while (emotes.hasNext() && isRunning()) {
+            RestAction<Void> action = addReaction(emotes.next());
+            if (action != null) {
+                action.queue(success -> addReactions(emotes), failure -> {
+                });
+                return;
+            }
+        }
+    }
+
+    private RestAction<Void> addReaction(String emote) {
+        if (!EmoteKeys.isCustom(emote)) {
+            return message.addReaction(emote);
+        }
+        Emote custom = EmoteKeys.resolve(message.getJDA(), emote);
+        return custom == null ? null : message.addReaction(custom);
+    }
+}
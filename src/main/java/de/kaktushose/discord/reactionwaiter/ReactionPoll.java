@@ -0,0 +1,309 @@
+package de.kaktushose.discord.reactionwaiter;
+
+import net.dv8tion.jda.api.entities.Emote;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.requests.RestAction;
+
+import javax.annotation.Nonnull;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts the votes of a poll that is held with the reactions of a message. The poll is built on a
+ * {@link ReactionWaiter} that {@link ReactionWaiter#listenForRemovals(boolean) listens for removals}, thus a vote is
+ * counted when a user adds a reaction and withdrawn when the user removes it again.
+ *
+ * <p>Every option has its own {@link LongAdder} and the votes of the users are kept in a {@link ConcurrentHashMap}, so
+ * counting a vote never takes a global lock. The read methods don't block the counting either, they return a snapshot
+ * that might already be outdated when it's returned. Reactions that were added before the poll got started aren't
+ * counted, neither are reactions of bots. The poll doesn't add the option reactions to the message itself.
+ *
+ * <p>A poll can either allow multiple choices, which is the default, or be {@link #setSingleChoice(boolean) single
+ * choice}. In the latter case a new vote replaces the previous vote of the user and the previous reaction gets removed
+ * from the message. This requires the {@code MESSAGE_MANAGE} permission.
+ *
+ * <p>Removed reactions are exempt from the rate limits of the {@link ReactionListener}, so a withdrawn vote is never
+ * lost and the counts can't drift upwards. Added reactions are still rate limited, a vote that got dropped isn't
+ * counted and removing its reaction later on doesn't withdraw anything.
+ *
+ * <pre>{@code
+ * ReactionPoll poll = new ReactionPoll(message, EmoteType.ONE.unicode, EmoteType.TWO.unicode).setSingleChoice(true);
+ * poll.start(1, TimeUnit.HOURS);
+ * ...
+ * Map<String, Long> results = poll.getResults();
+ * }</pre>
+ *
+ * @author Kaktushose
+ * @version 3.0.0
+ * @since 3.0.0
+ */
+
+public class ReactionPoll {
+
+    private final ReactionWaiter waiter;
+    // the key set is fixed after construction, only the adders change
+    private final Map<String, LongAdder> counts;
+    private final Map<Long, String> choices = new ConcurrentHashMap<>();
+    private final Map<Long, Set<String>> selections = new ConcurrentHashMap<>();
+    private volatile boolean singleChoice;
+
+    /**
+     * Creates a new poll for the given message. The poll has to be started with {@link #start()}.
+     *
+     * @param message the message that holds the poll
+     * @param options the emotes that represent the options of the poll
+     * @throws IllegalArgumentException if a custom emote doesn't contain its id
+     */
+    public ReactionPoll(@Nonnull Message message, @Nonnull String... options) {
+        this(message, Arrays.asList(options));
+    }
+
+    /**
+     * Creates a new poll for the given message. The poll has to be started with {@link #start()}.
+     *
+     * @param message the message that holds the poll
+     * @param options the emotes that represent the options of the poll
+     * @throws IllegalArgumentException if a custom emote doesn't contain its id
+     */
+    public ReactionPoll(@Nonnull Message message, @Nonnull Collection<String> options) {
+        Map<String, LongAdder> counts = new LinkedHashMap<>();
+        for (String option : options) {
+            counts.put(EmoteKeys.register(option), new LongAdder());
+        }
+        this.counts = Collections.unmodifiableMap(counts);
+        this.waiter = new ReactionWaiter(message, options).listenForRemovals(true);
+        waiter.setRemovalsExempt(true);
+    }
+
+    /**
+     * Set this to {@code true} if every user may only vote for one option. The default value is {@code false}.
+     * This should be set before the poll gets started.
+     *
+     * @param singleChoice {@code true} if every user may only vote for one option
+     * @return the current instance to use fluent interface
+     */
+    public ReactionPoll setSingleChoice(boolean singleChoice) {
+        this.singleChoice = singleChoice;
+        return this;
+    }
+
+    /**
+     * Binds this poll to the given {@link ReactionListener}.
+     *
+     * @param listener the {@link ReactionListener} to register the poll at
+     * @return the current instance to use fluent interface
+     * @see ReactionWaiter#using(ReactionListener)
+     */
+    public ReactionPoll using(@Nonnull ReactionListener listener) {
+        waiter.using(listener);
+        return this;
+    }
+
+    /**
+     * Starts counting the votes. Keep in mind that the poll gets stopped after five minutes if the listener removes
+     * waiters automatically, use {@link #start(long, TimeUnit)} to set the duration explicitly.
+     *
+     * @return the current instance to use fluent interface
+     */
+    public ReactionPoll start() {
+        waiter.onEvent(this::count);
+        return this;
+    }
+
+    /**
+     * Starts counting the votes and stops the poll after a given set of time.
+     *
+     * @param duration the time from now to stop the poll
+     * @param timeUnit the time unit of the duration parameter
+     * @return the current instance to use fluent interface
+     */
+    public ReactionPoll start(long duration, @Nonnull TimeUnit timeUnit) {
+        waiter.onEvent(this::count, duration, timeUnit);
+        return this;
+    }
+
+    /**
+     * Stops counting the votes. The results can still be read afterwards.
+     *
+     * @param removeReactions {@code true} if this method should also remove the reactions from the message
+     * @return the current instance to use fluent interface
+     */
+    public ReactionPoll stop(boolean removeReactions) {
+        waiter.stopWaiting(removeReactions);
+        return this;
+    }
+
+    /**
+     * Whether this poll is currently counting votes.
+     *
+     * @return {@code true} if this poll is currently counting votes
+     */
+    public boolean isRunning() {
+        return waiter.isRegistered();
+    }
+
+    /**
+     * Get the emotes that represent the options of this poll.
+     *
+     * @return an unmodifiable Set of the options in the order they were passed, custom emotes are contained as their id
+     */
+    public Set<String> getOptions() {
+        return counts.keySet();
+    }
+
+    /**
+     * Get the amount of votes for the given option.
+     *
+     * @param option the emote of the option, custom emotes can be passed in any format the poll accepts
+     * @return the amount of votes or {@code 0} if the emote isn't an option of this poll
+     */
+    public long getCount(@Nonnull String option) {
+        LongAdder count = counts.get(EmoteKeys.normalize(option));
+        return count == null ? 0 : count.sum();
+    }
+
+    /**
+     * Get a snapshot of the amount of votes for every option.
+     *
+     * @return an unmodifiable Map of the options to their amount of votes, in the order the options were passed
+     */
+    public Map<String, Long> getResults() {
+        Map<String, Long> results = new LinkedHashMap<>();
+        counts.forEach((option, count) -> results.put(option, count.sum()));
+        return Collections.unmodifiableMap(results);
+    }
+
+    /**
+     * Get the options the given user currently votes for.
+     *
+     * @param userId the id of the user
+     * @return an unmodifiable Set of the options the user votes for, empty if the user didn't vote
+     */
+    public Set<String> getVotes(long userId) {
+        String choice = choices.get(userId);
+        if (choice != null) {
+            return Collections.singleton(choice);
+        }
+        Set<String> selection = selections.get(userId);
+        if (selection == null) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(new HashSet<>(selection));
+    }
+
+    /**
+     * Get the amount of users that currently vote for at least one option.
+     *
+     * @return the amount of voters
+     */
+    public int getVoterCount() {
+        return choices.size() + selections.size();
+    }
+
+    private void count(ReactionEvent event) {
+        switch (event.getAction()) {
+            case ADD:
+                if (singleChoice) {
+                    choose(event);
+                } else {
+                    select(event.getUserIdLong(), event.getEmote());
+                }
+                break;
+            case REMOVE:
+                if (choices.remove(event.getUserIdLong(), event.getEmote())) {
+                    counts.get(event.getEmote()).decrement();
+                } else {
+                    deselect(event.getUserIdLong(), event.getEmote());
+                }
+                break;
+            case REMOVE_EMOTE:
+                removeOption(event.getEmote());
+                break;
+            case REMOVE_ALL:
+                choices.clear();
+                selections.clear();
+                counts.values().forEach(LongAdder::reset);
+                break;
+        }
+    }
+
+    private void choose(ReactionEvent event) {
+        String emote = event.getEmote();
+        String previous = choices.put(event.getUserIdLong(), emote);
+        if (emote.equals(previous)) {
+            return;
+        }
+        counts.get(emote).increment();
+        if (previous == null) {
+            return;
+        }
+        counts.get(previous).decrement();
+        // the resulting removal event is ignored, because the choice of the user already changed
+        TextChannel channel = event.getChannel();
+        User user = event.getUser();
+        if (channel == null || user == null) {
+            return;
+        }
+        RestAction<Void> action;
+        if (EmoteKeys.isCustom(previous)) {
+            Emote custom = EmoteKeys.resolve(channel.getJDA(), previous);
+            action = custom == null ? null : channel.removeReactionById(event.getMessageIdLong(), custom, user);
+        } else {
+            action = channel.removeReactionById(event.getMessageIdLong(), previous, user);
+        }
+        if (action != null) {
+            action.queue(null, throwable -> {
+            });
+        }
+    }
+
+    // both run inside compute, so a selection can't be dropped while a vote gets added to it
+    private void select(long userId, String emote) {
+        boolean[] added = new boolean[1];
+        selections.compute(userId, (key, selection) -> {
+            if (selection == null) {
+                selection = ConcurrentHashMap.newKeySet();
+            }
+            added[0] = selection.add(emote);
+            return selection;
+        });
+        if (added[0]) {
+            counts.get(emote).increment();
+        }
+    }
+
+    private void deselect(long userId, String emote) {
+        boolean[] removed = new boolean[1];
+        selections.computeIfPresent(userId, (key, selection) -> {
+            removed[0] = selection.remove(emote);
+            return selection.isEmpty() ? null : selection;
+        });
+        if (removed[0]) {
+            counts.get(emote).decrement();
+        }
+    }
+
+    private void removeOption(String emote) {
+        LongAdder count = counts.get(emote);
+        choices.values().removeIf(choice -> {
+            if (choice.equals(emote)) {
+                count.decrement();
+                return true;
+            }
+            return false;
+        });
+        for (Long userId : selections.keySet()) {
+            deselect(userId, emote);
+        }
+    }
+}
@@ -1,54 +1,89 @@
 package de.kaktushose.discord.reactionwaiter;
 
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
 import net.dv8tion.jda.api.entities.Member;
 import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.api.requests.RestAction;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 /**
  * The ReactionWaiter waits for reactions being added to messages.
  * There are different variants possible. You can observe a specific message, but also all messages in general.
  * Further you can also only accept specific members.
+ * The emotes are either unicode emotes, e.g. the values of {@link EmoteType}, or custom emotes in any of the formats
+ * {@code <:name:id>}, {@code name:id} or just the id. Custom emotes are matched by their id only.
+ * Waiters that aren't bound to a message can be narrowed down with filters, e.g. {@link #inChannel(long)} or
+ * {@link #withRoles(long...)}. Prefer these filters over checks inside the consumer, a waiter that is limited to a
+ * channel or guild is only looked at for reactions in that channel or guild.
  *
  * @author Kaktushose
- * @version 2.0.0
+ * @version 3.0.0
  * @since 1.0.0
  */
 
 public class ReactionWaiter {
 
+    // moves the persisted deadline of concurrent matches, so only one of them saves the waiter again
+    private static final AtomicLongFieldUpdater<ReactionWaiter> EXPIRES_AT = AtomicLongFieldUpdater.newUpdater(ReactionWaiter.class, "expiresAt");
     private final Set<String> emotes;
-    private final Message message;
-    private final Member member;
+    private final JDA jda;
+    private final long guildId;
+    private final long channelId;
+    private final long messageId;
+    private final long userId;
     private Consumer<ReactionEvent> consumer;
+    private ReactionHandler handler;
+    private long payload;
+    private CompletableFuture<ReactionEvent> future;
+    private volatile ReactionListener listener;
+    private volatile boolean registered;
+    private volatile boolean removals;
+    private volatile TokenBucket rateLimiter;
+    private volatile boolean removalsExempt;
+    private volatile WaiterFilter filter = WaiterFilter.NONE;
+    private volatile Runnable evictionCallback;
+    private volatile CapacityTracker.Entry capacityEntry;
+    private volatile String handlerKey;
+    private long recordId;
+    private volatile long expiresAt;
+    private volatile TimingWheel.Timeout timeout;
+    private volatile long idleTimeout;
+    private AsyncDispatcher.Mailbox mailbox;
 
     /**
      * This constructor creates a reaction waiter that will accept the given emotes, all messages and all users
      *
      * @param emotes the emotes that will be listened for
+     * @throws IllegalArgumentException if a custom emote doesn't contain its id
      */
     public ReactionWaiter(@Nonnull String... emotes) {
-        this.emotes = new HashSet<>(Arrays.asList(emotes));
-        this.message = null;
-        this.member = null;
+        this(null, null, Arrays.asList(emotes));
     }
 
     /**
      * This constructor creates a reaction waiter that will accept the given emotes, all messages and all users
      *
      * @param emotes the emotes that will be listened for
+     * @throws IllegalArgumentException if a custom emote doesn't contain its id
      */
     public ReactionWaiter(@Nonnull Collection<String> emotes) {
-        this.emotes = new HashSet<>(emotes);
-        this.message = null;
-        this.member = null;
+        this(null, null, emotes);
     }
 
     /**
@@ -56,11 +91,10 @@ public class ReactionWaiter {
      *
      * @param message the message that will be monitored
      * @param emotes  the emotes that will be listened for
+     * @throws IllegalArgumentException if a custom emote doesn't contain its id
      */
     public ReactionWaiter(@Nullable Message message, @Nonnull String... emotes) {
-        this.emotes = new HashSet<>(Arrays.asList(emotes));
-        this.message = message;
-        this.member = null;
+        this(message, null, Arrays.asList(emotes));
     }
 
     /**
@@ -68,11 +102,10 @@ public class ReactionWaiter {
      *
      * @param message the message that will be monitored
      * @param emotes  the emotes that will be listened for
+     * @throws IllegalArgumentException if a custom emote doesn't contain its id
      */
     public ReactionWaiter(@Nullable Message message, @Nonnull Collection<String> emotes) {
-        this.emotes = new HashSet<>(emotes);
-        this.message = message;
-        this.member = null;
+        this(message, null, emotes);
     }
 
     /**
@@ -81,24 +114,57 @@ public class ReactionWaiter {
      * @param member  the member that will be accepted
      * @param message the message that will be monitored
      * @param emotes  the emotes that will be listened for
+     * @throws IllegalArgumentException if a custom emote doesn't contain its id
      */
     public ReactionWaiter(@Nullable Message message, @Nullable Member member, @Nonnull String... emotes) {
-        this.emotes = new HashSet<>(Arrays.asList(emotes));
-        this.message = message;
-        this.member = member;
+        this(message, member, Arrays.asList(emotes));
     }
 
     /**
      * This constructor creates a reaction waiter that will accept the given emotes and is limited to a specific message and user.
+     * Only the IDs of the message and the member are kept, the entities themselves aren't referenced by the waiter.
      *
      * @param member  the member that will be accepted
      * @param message the message that will be monitored
      * @param emotes  the emotes that will be listened for
+     * @throws IllegalArgumentException if a custom emote doesn't contain its id
      */
     public ReactionWaiter(@Nullable Message message, @Nullable Member member, Collection<String> emotes) {
-        this.emotes = new HashSet<>(emotes);
-        this.message = message;
-        this.member = member;
+        this.emotes = keysOf(emotes);
+        if (message != null) {
+            this.jda = message.getJDA();
+        } else if (member != null) {
+            this.jda = member.getJDA();
+        } else {
+            this.jda = null;
+        }
+        if (member != null) {
+            this.guildId = member.getGuild().getIdLong();
+        } else if (message != null && message.isFromGuild()) {
+            this.guildId = message.getGuild().getIdLong();
+        } else {
+            this.guildId = 0;
+        }
+        this.channelId = message == null ? 0 : message.getChannel().getIdLong();
+        this.messageId = message == null ? 0 : message.getIdLong();
+        this.userId = member == null ? 0 : member.getIdLong();
+    }
+
+    ReactionWaiter(@Nullable JDA jda, long guildId, long channelId, long messageId, long userId, Collection<String> emotes) {
+        this.emotes = keysOf(emotes);
+        this.jda = jda;
+        this.guildId = guildId;
+        this.channelId = channelId;
+        this.messageId = messageId;
+        this.userId = userId;
+    }
+
+    private static Set<String> keysOf(Collection<String> emotes) {
+        Set<String> keys = new HashSet<>();
+        for (String emote : emotes) {
+            keys.add(EmoteKeys.register(emote));
+        }
+        return Collections.unmodifiableSet(keys);
     }
 
     /**
@@ -109,8 +175,10 @@ public class ReactionWaiter {
      * @return the current instance to use fluent interface
      */
     public ReactionWaiter onEvent(@Nonnull Consumer<ReactionEvent> consumer) {
-        ReactionListener.addReactionWaiter(this);
+        this.future = null;
         this.consumer = consumer;
+        this.handler = null;
+        getListener().add(this);
         return this;
     }
 
@@ -124,12 +192,153 @@ public class ReactionWaiter {
      * @return the current instance to use fluent interface
      */
     public ReactionWaiter onEvent(@Nonnull Consumer<ReactionEvent> consumer, long delay, @Nonnull TimeUnit timeUnit) {
-        ReactionListener.addReactionWaiter(this);
-        ReactionListener.removeReactionWaiter(this, delay, timeUnit);
+        this.future = null;
         this.consumer = consumer;
+        this.handler = null;
+        ReactionListener listener = getListener();
+        listener.add(this);
+        listener.remove(this, delay, timeUnit);
+        return this;
+    }
+
+    /**
+     * Activates the waiter with the {@link ReactionHandler} that is registered under the given key. The waiter only
+     * references the shared handler and the payload, which is passed to the handler with every event. Waiters that
+     * use a handler are persisted automatically if the listener has a {@link WaiterStore}.
+     *
+     * @param handlerKey the key the {@link ReactionHandler} is registered under
+     * @param payload    the payload that will be passed to the handler
+     * @return the current instance to use fluent interface
+     * @throws IllegalArgumentException if no handler is registered under the given key
+     * @see ReactionListener#registerHandler(String, ReactionHandler)
+     */
+    public ReactionWaiter onEvent(@Nonnull String handlerKey, long payload) {
+        ReactionListener listener = getListener();
+        useHandler(listener, handlerKey, payload);
+        listener.add(this);
+        return this;
+    }
+
+    /**
+     * Activates the waiter with the {@link ReactionHandler} that is registered under the given key and deactivates it
+     * after a given set of time.
+     *
+     * @param handlerKey the key the {@link ReactionHandler} is registered under
+     * @param payload    the payload that will be passed to the handler
+     * @param delay      the time from now to deactivate the waiter
+     * @param timeUnit   the time unit of the delay parameter
+     * @return the current instance to use fluent interface
+     * @throws IllegalArgumentException if no handler is registered under the given key
+     * @see #onEvent(String, long)
+     */
+    public ReactionWaiter onEvent(@Nonnull String handlerKey, long payload, long delay, @Nonnull TimeUnit timeUnit) {
+        ReactionListener listener = getListener();
+        useHandler(listener, handlerKey, payload);
+        listener.add(this);
+        listener.remove(this, delay, timeUnit);
         return this;
     }
 
+    private void useHandler(ReactionListener listener, String handlerKey, long payload) {
+        ReactionHandler handler = listener.getHandler(handlerKey);
+        if (handler == null) {
+            throw new IllegalArgumentException("No handler registered for key " + handlerKey);
+        }
+        useHandler(handlerKey, handler, payload);
+    }
+
+    void useHandler(String handlerKey, ReactionHandler handler, long payload) {
+        this.future = null;
+        this.consumer = null;
+        this.handler = handler;
+        this.handlerKey = handlerKey;
+        this.payload = payload;
+    }
+
+    void useConsumer(Consumer<ReactionEvent> consumer) {
+        this.future = null;
+        this.consumer = consumer;
+        this.handler = null;
+    }
+
+    /**
+     * Activates the waiter and delivers the matching {@link ReactionEvent}s in batches instead of one by one. A batch
+     * is delivered as soon as it contains {@code batchSize} events or {@code window} elapsed since its first event,
+     * whichever comes first. Thus many reactions within a short time can be processed at once, e.g. with a single
+     * database write. Batches are delivered one after another in the order the events were received. Batches that are
+     * closed by the time window are delivered on the dispatch executor of the listener, or on the common
+     * {@code ForkJoinPool} if there is none. Events that are buffered when the waiter gets deactivated are still
+     * delivered once their window elapsed.
+     *
+     * @param consumer  the callback that will be called with every batch of {@link ReactionEvent}s
+     * @param batchSize the maximum amount of events per batch
+     * @param window    the maximum time to wait for a batch to fill up
+     * @param timeUnit  the time unit of the window parameter
+     * @return the current instance to use fluent interface
+     * @throws IllegalArgumentException if the batch size is less than one
+     */
+    public ReactionWaiter onEvents(@Nonnull Consumer<List<ReactionEvent>> consumer, int batchSize, long window, @Nonnull TimeUnit timeUnit) {
+        ReactionListener listener = getListener();
+        this.consumer = new EventBatcher(consumer, batchSize, window, timeUnit, listener);
+        this.handler = null;
+        this.future = null;
+        listener.add(this);
+        return this;
+    }
+
+    /**
+     * Activates the waiter for exactly one {@link ReactionEvent}. The waiter gets unregistered as soon as the first
+     * matching reaction is added, further reactions won't be delivered. The returned future completes with that event,
+     * or completes exceptionally with a {@link java.util.concurrent.TimeoutException} if the waiter gets removed
+     * automatically before. Deactivating the waiter or cancelling the future cancels the other one as well.
+     * The reactions of the message are left alone when a reaction matched, remove them in a dependent stage if they
+     * should be cleared. A waiter that expires removes them like any other waiter.
+     * Keep in mind that dependent stages run on the thread that completes the future, which is the JDA event thread
+     * by default, so prefer the async variants for blocking work.
+     *
+     * @return a {@link CompletableFuture} that completes with the first matching {@link ReactionEvent}
+     */
+    public CompletableFuture<ReactionEvent> await() {
+        CompletableFuture<ReactionEvent> future = prepareAwait();
+        getListener().add(this);
+        return future;
+    }
+
+    /**
+     * Activates the waiter for exactly one {@link ReactionEvent}. The waiter gets unregistered as soon as the first
+     * matching reaction is added, further reactions won't be delivered. The returned future completes with that event,
+     * or completes exceptionally with a {@link java.util.concurrent.TimeoutException} if no matching reaction is added
+     * within the given time. Deactivating the waiter or cancelling the future cancels the other one as well.
+     * The reactions of the message are left alone when a reaction matched, remove them in a dependent stage if they
+     * should be cleared. A waiter that expires removes them like any other waiter.
+     * Keep in mind that dependent stages run on the thread that completes the future, which is the JDA event thread
+     * by default, so prefer the async variants for blocking work.
+     *
+     * @param timeout  the time from now to wait for a matching reaction
+     * @param timeUnit the time unit of the timeout parameter
+     * @return a {@link CompletableFuture} that completes with the first matching {@link ReactionEvent}
+     */
+    public CompletableFuture<ReactionEvent> await(long timeout, @Nonnull TimeUnit timeUnit) {
+        CompletableFuture<ReactionEvent> future = prepareAwait();
+        ReactionListener listener = getListener();
+        listener.add(this);
+        listener.remove(this, timeout, timeUnit);
+        return future;
+    }
+
+    private CompletableFuture<ReactionEvent> prepareAwait() {
+        CompletableFuture<ReactionEvent> future = new CompletableFuture<>();
+        future.whenComplete((event, throwable) -> {
+            if (future.isCancelled()) {
+                stopWaiting(false);
+            }
+        });
+        this.future = future;
+        this.consumer = future::complete;
+        this.handler = null;
+        return future;
+    }
+
     /**
      * Deactivates the reaction waiter.
      *
@@ -137,7 +346,7 @@ public class ReactionWaiter {
      * @return the current instance to use fluent interface
      */
     public ReactionWaiter stopWaiting(boolean removeReactions) {
-        ReactionListener.removeReactionWaiter(this, removeReactions);
+        getListener().remove(this, removeReactions);
         return this;
     }
 
@@ -149,43 +358,506 @@ public class ReactionWaiter {
      * @return the current instance to use fluent interface
      */
     public ReactionWaiter stopWaitingAfter(long delay, @Nonnull TimeUnit timeUnit) {
-        ReactionListener.removeReactionWaiter(this, delay, timeUnit);
+        getListener().remove(this, delay, timeUnit);
+        return this;
+    }
+
+    /**
+     * Set this to {@code true} to also receive removed reactions. Removals are delivered to the same consumer, use
+     * {@link ReactionEvent#getAction()} to tell them apart from added reactions. Besides single removals this includes
+     * the removal of all reactions of an emote and, for waiters bound to a message, the removal of all reactions of the
+     * message. Both bulk removals have no user, so they are also delivered to waiters that only accept a specific
+     * member. The default value is {@code false}.
+     *
+     * @param removals {@code true} if removed reactions should be delivered as well
+     * @return the current instance to use fluent interface
+     */
+    public ReactionWaiter listenForRemovals(boolean removals) {
+        this.removals = removals;
+        return this;
+    }
+
+    /**
+     * Whether this waiter also receives removed reactions.
+     *
+     * @return {@code true} if removed reactions are delivered as well
+     * @see #listenForRemovals(boolean)
+     */
+    public boolean isListeningForRemovals() {
+        return removals;
+    }
+
+    /**
+     * Deactivates this waiter once no matching reaction was received for the given time. Every delivered event
+     * extends the lifetime of the waiter again, thus active waiters stay alive while idle ones are removed quickly.
+     * The idle timeout replaces the automatic removal of the {@link ReactionListener} and also extends any deadline
+     * set with {@link #stopWaitingAfter(long, TimeUnit)}. The deadline of a persisted waiter is saved again once it
+     * moved by more than half the timeout, so after a restart the waiter expires at most half the timeout early. This
+     * has to be called before the waiter gets activated.
+     *
+     * @param timeout  the time without a matching reaction after which the waiter gets deactivated
+     * @param timeUnit the time unit of the timeout parameter
+     * @return the current instance to use fluent interface
+     */
+    public ReactionWaiter setIdleTimeout(long timeout, @Nonnull TimeUnit timeUnit) {
+        this.idleTimeout = timeUnit.toNanos(timeout);
         return this;
     }
 
     /**
-     * Get a Set containing the emotes that this waiter listens for.
+     * Limits how often the consumer of this waiter gets called. Events that exceed the limit are dropped. The limit is
+     * applied in addition to the user and guild limits of the {@link ReactionListener}. Pass {@code null} to remove
+     * the limit, which is the default.
+     *
+     * @param rateLimit the {@link RateLimit} to apply or {@code null}
+     * @return the current instance to use fluent interface
+     */
+    public ReactionWaiter setRateLimit(@Nullable RateLimit rateLimit) {
+        this.rateLimiter = rateLimit == null ? null : rateLimit.newBucket();
+        return this;
+    }
+
+    /**
+     * Only accepts reactions in the given channel. The waiter is indexed by the channel, thus it doesn't slow down
+     * reactions in any other channel. This has to be called before the waiter gets activated.
+     *
+     * @param channel the {@code TextChannel} to accept reactions in
+     * @return the current instance to use fluent interface
+     * @throws IllegalStateException if the waiter is already active
+     */
+    public ReactionWaiter inChannel(@Nonnull TextChannel channel) {
+        return inChannel(channel.getIdLong());
+    }
+
+    /**
+     * Only accepts reactions in the channel with the given id. The waiter is indexed by the channel, thus it doesn't
+     * slow down reactions in any other channel. This has to be called before the waiter gets activated.
+     *
+     * @param channelId the id of the channel to accept reactions in
+     * @return the current instance to use fluent interface
+     * @throws IllegalStateException if the waiter is already active
+     */
+    public ReactionWaiter inChannel(long channelId) {
+        return setFilter(filter.withChannel(channelId));
+    }
+
+    /**
+     * Only accepts reactions in the given guild. The waiter is indexed by the guild, thus it doesn't slow down
+     * reactions in any other guild. This has to be called before the waiter gets activated.
      *
-     * @return a Set containing the emotes that will be listened to
+     * @param guild the {@code Guild} to accept reactions in
+     * @return the current instance to use fluent interface
+     * @throws IllegalStateException if the waiter is already active
+     */
+    public ReactionWaiter inGuild(@Nonnull Guild guild) {
+        return inGuild(guild.getIdLong());
+    }
+
+    /**
+     * Only accepts reactions in the guild with the given id. The waiter is indexed by the guild, thus it doesn't slow
+     * down reactions in any other guild. This has to be called before the waiter gets activated.
+     *
+     * @param guildId the id of the guild to accept reactions in
+     * @return the current instance to use fluent interface
+     * @throws IllegalStateException if the waiter is already active
+     */
+    public ReactionWaiter inGuild(long guildId) {
+        return setFilter(filter.withGuild(guildId));
+    }
+
+    /**
+     * Only accepts reactions of the users with the given IDs. Replaces any user IDs set before. Bulk removals have no
+     * user and are still delivered. This has to be called before the waiter gets activated.
+     *
+     * @param userIds the IDs of the users to accept
+     * @return the current instance to use fluent interface
+     * @throws IllegalStateException if the waiter is already active
+     */
+    public ReactionWaiter fromUsers(@Nonnull long... userIds) {
+        return setFilter(filter.withUsers(userIds));
+    }
+
+    /**
+     * Only accepts reactions of members that have at least one of the given roles. Replaces any roles set before.
+     * The roles are checked against the cached member, reactions of members that aren't cached are rejected. Bulk
+     * removals have no member and are still delivered. This has to be called before the waiter gets activated.
+     *
+     * @param roles the roles of which the member needs at least one
+     * @return the current instance to use fluent interface
+     * @throws IllegalStateException if the waiter is already active
+     */
+    public ReactionWaiter withRoles(@Nonnull Role... roles) {
+        long[] roleIds = new long[roles.length];
+        for (int i = 0; i < roles.length; i++) {
+            roleIds[i] = roles[i].getIdLong();
+        }
+        return withRoles(roleIds);
+    }
+
+    /**
+     * Only accepts reactions of members that have at least one of the roles with the given IDs. Replaces any roles set
+     * before. The roles are checked against the cached member, reactions of members that aren't cached are rejected.
+     * Bulk removals have no member and are still delivered. This has to be called before the waiter gets activated.
+     *
+     * @param roleIds the IDs of the roles of which the member needs at least one
+     * @return the current instance to use fluent interface
+     * @throws IllegalStateException if the waiter is already active
+     */
+    public ReactionWaiter withRoles(@Nonnull long... roleIds) {
+        return setFilter(filter.withRoles(roleIds));
+    }
+
+    /**
+     * Only accepts reactions that match the given predicate. The predicate is evaluated after all other filters and
+     * before a one shot waiter gets deactivated, so it should be fast and must not block. Multiple predicates must all
+     * match. This has to be called before the waiter gets activated.
+     *
+     * @param predicate the predicate the {@link ReactionEvent} has to match
+     * @return the current instance to use fluent interface
+     * @throws IllegalStateException if the waiter is already active
+     */
+    public ReactionWaiter filter(@Nonnull Predicate<ReactionEvent> predicate) {
+        return setFilter(filter.withPredicate(predicate));
+    }
+
+    // the registry indexes by the filter, so it must not change while the waiter is registered
+    private synchronized ReactionWaiter setFilter(WaiterFilter filter) {
+        if (registered) {
+            throw new IllegalStateException("The filters of an active waiter can't be changed!");
+        }
+        this.filter = filter;
+        return this;
+    }
+
+    /**
+     * Set a callback that gets called if this waiter gets evicted or rejected because a capacity limit of its
+     * {@link ReactionListener} was reached. The callback is called after the waiter got deactivated, use it to clean up
+     * anything that belongs to the waiter.
+     *
+     * @param callback the callback to call on eviction or {@code null}
+     * @return the current instance to use fluent interface
+     * @see ReactionListener#setCapacity(int, int, int, EvictionPolicy)
+     */
+    public ReactionWaiter onEviction(@Nullable Runnable callback) {
+        this.evictionCallback = callback;
+        return this;
+    }
+
+    /**
+     * Marks this waiter to be persisted in the {@link WaiterStore} of its {@link ReactionListener}, so it survives a
+     * restart. Only the IDs, the emotes, the expiry deadline and the given key are stored. When the waiter gets
+     * restored, the key is resolved to the consumer again, see
+     * {@link ReactionListener#setStore(WaiterStore, java.util.function.Function)}. This has to be called before the
+     * waiter gets activated with {@link #onEvent(Consumer)} and has no effect if the listener has no store. Waiters
+     * that use a {@link ReactionHandler} are persisted with the key of their handler anyway. The filters of the waiter,
+     * e.g. {@link #inChannel(long)}, aren't persisted.
+     *
+     * @param handlerKey the key that identifies the consumer of this waiter
+     * @return the current instance to use fluent interface
+     */
+    public ReactionWaiter persist(@Nonnull String handlerKey) {
+        this.handlerKey = handlerKey;
+        return this;
+    }
+
+    /**
+     * Binds this waiter to the given {@link ReactionListener}. By default a waiter is registered at the listener that
+     * is attached to the JDA of its message or member, or at the default listener if there is none. Waiters that aren't
+     * bound to a message or member need to be bound explicitly if you use multiple listeners.
+     * This has no effect on a waiter that is already active.
+     *
+     * @param listener the {@link ReactionListener} to register this waiter at
+     * @return the current instance to use fluent interface
+     */
+    public ReactionWaiter using(@Nonnull ReactionListener listener) {
+        if (!registered) {
+            this.listener = listener;
+        }
+        return this;
+    }
+
+    /**
+     * Get the {@link ReactionListener} this waiter is or will be registered at.
+     *
+     * @return the {@link ReactionListener} of this waiter
+     */
+    public ReactionListener getListener() {
+        ReactionListener listener = this.listener;
+        if (listener == null) {
+            listener = ReactionListener.of(jda);
+            this.listener = listener;
+        }
+        return listener;
+    }
+
+    /**
+     * Get an unmodifiable Set containing the emotes that this waiter listens for. Custom emotes are contained as their
+     * id.
+     *
+     * @return an unmodifiable Set containing the emotes that will be listened to
      */
     public Set<String> getEmotes() {
         return emotes;
     }
 
     /**
-     * Get the {@code Message} that this waiter listens for. Might be null.
+     * Get the JDA instance of the message or member this waiter is bound to. Might be null.
+     *
+     * @return the JDA instance of this waiter
+     */
+    public JDA getJDA() {
+        return jda;
+    }
+
+    /**
+     * Get the id of the guild of the message or member this waiter is bound to.
+     *
+     * @return the id of the guild or {@code 0} if this waiter isn't bound to a guild
+     */
+    public long getGuildIdLong() {
+        return guildId;
+    }
+
+    /**
+     * Get the id of the channel of the message this waiter listens for.
+     *
+     * @return the id of the channel or {@code 0} if this waiter isn't bound to a message
+     */
+    public long getChannelIdLong() {
+        return channelId;
+    }
+
+    /**
+     * Get the id of the message this waiter listens for.
+     *
+     * @return the id of the message or {@code 0} if this waiter isn't bound to a message
+     */
+    public long getMessageIdLong() {
+        return messageId;
+    }
+
+    /**
+     * Get the id of the user this waiter listens for.
+     *
+     * @return the id of the user or {@code 0} if this waiter accepts all users
+     */
+    public long getUserIdLong() {
+        return userId;
+    }
+
+    /**
+     * Get the {@code TextChannel} of the message that this waiter listens for. The channel is resolved from the JDA
+     * cache. Might be null.
+     *
+     * @return the {@code TextChannel} of the message that will be listened to
+     */
+    @Nullable
+    public TextChannel getTextChannel() {
+        if (jda == null || channelId == 0) {
+            return null;
+        }
+        return jda.getTextChannelById(channelId);
+    }
+
+    /**
+     * Retrieves the {@code Message} that this waiter listens for. Might be null if this waiter isn't bound to a message
+     * or the channel isn't cached anymore.
      *
-     * @return the {@code Message} that will be listened to
+     * @return a {@code RestAction} retrieving the {@code Message} that will be listened to
      */
-    public Message getMessage() {
-        return message;
+    @Nullable
+    public RestAction<Message> retrieveMessage() {
+        TextChannel channel = getTextChannel();
+        if (channel == null) {
+            return null;
+        }
+        return channel.retrieveMessageById(messageId);
     }
 
     /**
-     * Get the {@code Member} that this waiter listens for. Might be null.
+     * Get the {@code Member} that this waiter listens for. The member is resolved from the JDA cache. Might be null.
      *
      * @return the {@code Member} that will be listened to
      */
+    @Nullable
     public Member getMember() {
-        return member;
+        if (jda == null || userId == 0) {
+            return null;
+        }
+        Guild guild = jda.getGuildById(guildId);
+        return guild == null ? null : guild.getMemberById(userId);
     }
 
     /**
      * Get the {@link Consumer} that will be called when a {@link ReactionEvent} got triggered.
      *
-     * @return the callback that will be called when a {@link ReactionEvent} got triggered
+     * @return the callback that will be called when a {@link ReactionEvent} got triggered or {@code null} if this
+     * waiter uses a {@link ReactionHandler}
      */
     public Consumer<ReactionEvent> getConsumer() {
         return consumer;
     }
+
+    /**
+     * Whether this waiter is currently registered at the {@link ReactionListener}.
+     *
+     * @return {@code true} if this waiter is currently registered
+     */
+    public boolean isRegistered() {
+        return registered;
+    }
+
+    // only called by the WaiterRegistry while holding the monitor of this waiter
+    boolean markRegistered() {
+        if (registered) {
+            return false;
+        }
+        registered = true;
+        return true;
+    }
+
+    boolean markUnregistered() {
+        if (!registered) {
+            return false;
+        }
+        registered = false;
+        return true;
+    }
+
+    /**
+     * Get the key of the {@link ReactionHandler} this waiter uses or is persisted with.
+     *
+     * @return the key of the handler or {@code null} if there is none
+     * @see #onEvent(String, long)
+     * @see #persist(String)
+     */
+    public String getHandlerKey() {
+        return handlerKey;
+    }
+
+    /**
+     * Get the payload that is passed to the {@link ReactionHandler} of this waiter.
+     *
+     * @return the payload or {@code 0} if none was set
+     */
+    public long getPayload() {
+        return payload;
+    }
+
+    WaiterFilter getFilter() {
+        return filter;
+    }
+
+    ReactionHandler getHandler() {
+        return handler;
+    }
+
+    long getExpiresAt() {
+        return expiresAt;
+    }
+
+    synchronized long assignRecordId(WaiterStore store) {
+        if (recordId == 0) {
+            recordId = store.nextId();
+        }
+        return recordId;
+    }
+
+    synchronized long getRecordId() {
+        return recordId;
+    }
+
+    // restored waiters get the handler resolved from their key and keep the id of their record
+    synchronized void restore(long recordId, String handlerKey, long payload, ReactionHandler handler, Consumer<ReactionEvent> consumer) {
+        this.recordId = recordId;
+        this.handlerKey = handlerKey;
+        this.payload = payload;
+        this.handler = handler;
+        this.consumer = consumer;
+    }
+
+    long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    // called for every delivered event, so this only moves the deadline and leaves the wheel alone. The persisted
+    // deadline only follows once it lags behind by more than half the idle timeout, returns true if it should be saved,
+    // which is the case for only one of the matches that race for the same window
+    boolean touch(TimingWheel timingWheel) {
+        long idleTimeout = this.idleTimeout;
+        TimingWheel.Timeout timeout = this.timeout;
+        if (idleTimeout == 0 || timeout == null) {
+            return false;
+        }
+        timeout.extend(timingWheel.deadlineOf(idleTimeout, TimeUnit.NANOSECONDS));
+        long idleMillis = TimeUnit.NANOSECONDS.toMillis(idleTimeout);
+        long expiresAt = System.currentTimeMillis() + idleMillis;
+        long current = this.expiresAt;
+        if (expiresAt - current <= idleMillis / 2) {
+            return false;
+        }
+        return EXPIRES_AT.compareAndSet(this, current, expiresAt);
+    }
+
+    Runnable getEvictionCallback() {
+        return evictionCallback;
+    }
+
+    // only written by the CapacityTracker while holding its lock, matches read it without the lock
+    CapacityTracker.Entry getCapacityEntry() {
+        return capacityEntry;
+    }
+
+    void setCapacityEntry(CapacityTracker.Entry capacityEntry) {
+        this.capacityEntry = capacityEntry;
+    }
+
+    TokenBucket getRateLimiter() {
+        return rateLimiter;
+    }
+
+    // removals that undo a counted addition must not be dropped, otherwise the counts drift
+    void setRemovalsExempt(boolean removalsExempt) {
+        this.removalsExempt = removalsExempt;
+    }
+
+    boolean isRemovalsExempt() {
+        return removalsExempt;
+    }
+
+    CompletableFuture<ReactionEvent> getFuture() {
+        return future;
+    }
+
+    synchronized AsyncDispatcher.Mailbox getMailbox() {
+        if (mailbox == null) {
+            mailbox = new AsyncDispatcher.Mailbox(this);
+        }
+        return mailbox;
+    }
+
+    // if multiple timeouts get scheduled, the earliest one wins, just like the first removal task used to
+    boolean scheduleTimeout(TimingWheel timingWheel, long delay, TimeUnit timeUnit) {
+        return scheduleTimeout(timingWheel, timingWheel.deadlineOf(delay, timeUnit), System.currentTimeMillis() + timeUnit.toMillis(delay));
+    }
+
+    // bulk registrations compute the deadline once for all waiters
+    synchronized boolean scheduleTimeout(TimingWheel timingWheel, long deadline, long expiresAt) {
+        if (timeout != null && timeout.isActive()) {
+            if (timeout.getDeadline() - deadline <= 0) {
+                return false;
+            }
+            timeout.cancel();
+        }
+        timeout = timingWheel.schedule(this, deadline);
+        this.expiresAt = expiresAt;
+        return true;
+    }
+
+    synchronized void cancelTimeout() {
+        if (timeout != null) {
+            timeout.cancel();
+            timeout = null;
+        }
+    }
 }
@@ -0,0 +1,269 @@
+package de.kaktushose.discord.reactionwaiter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.function.Consumer;
+
+/**
+ * A hashed timing wheel that expires {@link ReactionWaiter}s. Instead of submitting one task per waiter to a
+ * {@code ScheduledExecutorService}, all timeouts are hashed into a fixed ring of buckets by their deadline. A single
+ * periodic task advances the wheel and expires every due timeout of a bucket at once.
+ *
+ * <p>Scheduling and cancelling a timeout is O(1) and may happen from any thread, both only enqueue the timeout. The
+ * buckets themselves are only touched by the tick task, so they don't need any synchronization. Cancelled timeouts are
+ * unlinked on the next tick and don't linger until their deadline. A timeout can also be extended from any thread, which
+ * only moves its deadline. Once the old deadline is reached, the tick task finds the new one and relinks the timeout
+ * instead of expiring it, so extending a timeout never has to touch the buckets.
+ *
+ * @author Kaktushose
+ * @version 3.0.0
+ * @since 3.0.0
+ */
+final class TimingWheel {
+
+    private final Bucket[] wheel;
+    private final int mask;
+    private final long tickNanos;
+    private final long startTime;
+    private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final Consumer<ReactionWaiter> expiryHandler;
+    private final ScheduledFuture<?> tickTask;
+    private long tick;
+
+    /**
+     * Creates a new timing wheel and starts advancing it on the given scheduler.
+     *
+     * @param scheduler     the scheduler to run the tick task on
+     * @param tickDuration  the duration of one tick, this is the precision of the timeouts
+     * @param unit          the time unit of the tick duration
+     * @param ticksPerWheel the amount of buckets, will be rounded up to a power of two
+     * @param expiryHandler the callback that will be called for every expired waiter
+     */
+    TimingWheel(ScheduledExecutorService scheduler, long tickDuration, TimeUnit unit, int ticksPerWheel, Consumer<ReactionWaiter> expiryHandler) {
+        int size = Integer.highestOneBit(Math.max(2, ticksPerWheel) - 1) << 1;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.startTime = System.nanoTime();
+        this.expiryHandler = expiryHandler;
+        this.tickTask = scheduler.scheduleAtFixedRate(this::advance, tickDuration, tickDuration, unit);
+    }
+
+    /**
+     * Stops advancing this wheel. Timeouts that didn't expire yet never will.
+     */
+    void stop() {
+        tickTask.cancel(false);
+    }
+
+    /**
+     * Converts a delay from now into a deadline of this wheel.
+     *
+     * @param delay    the time from now
+     * @param timeUnit the time unit of the delay parameter
+     * @return the deadline in nanoseconds relative to the start of this wheel
+     */
+    long deadlineOf(long delay, TimeUnit timeUnit) {
+        return System.nanoTime() - startTime + timeUnit.toNanos(delay);
+    }
+
+    /**
+     * Schedules the expiry of the given waiter.
+     *
+     * @param waiter   the waiter to expire
+     * @param deadline the deadline as returned by {@link #deadlineOf(long, TimeUnit)}
+     * @return the {@link Timeout} that can be used to cancel the expiry
+     */
+    Timeout schedule(ReactionWaiter waiter, long deadline) {
+        Timeout timeout = new Timeout(this, waiter, deadline);
+        pending.add(timeout);
+        return timeout;
+    }
+
+    private void advance() {
+        // an exception would suppress all further executions of this task, so never let one escape
+        try {
+            long now = System.nanoTime() - startTime;
+            unlinkCancelled();
+            transferPending();
+            List<ReactionWaiter> expired = new ArrayList<>();
+            List<Timeout> extended = new ArrayList<>();
+            while (tick <= now / tickNanos) {
+                wheel[(int) (tick & mask)].expire(tick, tickNanos, expired, extended);
+                // relinked after the bucket is done, an extended timeout might hash into the same bucket again
+                for (Timeout timeout : extended) {
+                    if (timeout.state == Timeout.ACTIVE) {
+                        link(timeout);
+                    }
+                }
+                extended.clear();
+                tick++;
+            }
+            for (ReactionWaiter waiter : expired) {
+                try {
+                    expiryHandler.accept(waiter);
+                } catch (RuntimeException ignored) {
+                    // a failing handler must not prevent the other waiters from expiring
+                }
+            }
+        } catch (RuntimeException ignored) {
+            // the next tick will retry
+        }
+    }
+
+    private void unlinkCancelled() {
+        Timeout timeout;
+        while ((timeout = cancelled.poll()) != null) {
+            if (timeout.bucket != null) {
+                timeout.bucket.unlink(timeout);
+            }
+        }
+    }
+
+    private void transferPending() {
+        Timeout timeout;
+        while ((timeout = pending.poll()) != null) {
+            if (timeout.state != Timeout.ACTIVE) {
+                continue;
+            }
+            link(timeout);
+        }
+    }
+
+    private void link(Timeout timeout) {
+        // overdue timeouts go into the current bucket and expire on this tick
+        long deadlineTick = Math.max(tick, (timeout.deadline + tickNanos - 1) / tickNanos);
+        timeout.deadlineTick = deadlineTick;
+        wheel[(int) (deadlineTick & mask)].link(timeout);
+    }
+
+    /**
+     * A pending expiry of a {@link ReactionWaiter}.
+     */
+    static final class Timeout {
+
+        private static final int ACTIVE = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE = AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+        private final TimingWheel timingWheel;
+        private final ReactionWaiter waiter;
+        private volatile long deadline;
+        private volatile int state;
+        // the following fields are only accessed by the tick task
+        private long deadlineTick;
+        private Bucket bucket;
+        private Timeout previous;
+        private Timeout next;
+
+        private Timeout(TimingWheel timingWheel, ReactionWaiter waiter, long deadline) {
+            this.timingWheel = timingWheel;
+            this.waiter = waiter;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels this timeout. Has no effect if the timeout already expired or got cancelled.
+         *
+         * @return {@code true} if the timeout got cancelled by this call
+         */
+        boolean cancel() {
+            if (!STATE.compareAndSet(this, ACTIVE, CANCELLED)) {
+                return false;
+            }
+            timingWheel.cancelled.add(this);
+            return true;
+        }
+
+        /**
+         * Moves the deadline of this timeout further away. Has no effect if the given deadline is earlier than the
+         * current one or the timeout already expired or got cancelled. Concurrent calls may overwrite each other, which
+         * only matters if they pass deadlines far apart.
+         *
+         * @param deadline the new deadline as returned by {@link TimingWheel#deadlineOf(long, TimeUnit)}
+         */
+        void extend(long deadline) {
+            if (state == ACTIVE && deadline - this.deadline > 0) {
+                this.deadline = deadline;
+            }
+        }
+
+        /**
+         * Whether this timeout is still pending, i.e. neither expired nor cancelled.
+         *
+         * @return {@code true} if this timeout is still pending
+         */
+        boolean isActive() {
+            return state == ACTIVE;
+        }
+
+        /**
+         * Gets the deadline of this timeout.
+         *
+         * @return the deadline in nanoseconds relative to the start of the wheel
+         */
+        long getDeadline() {
+            return deadline;
+        }
+    }
+
+    private static final class Bucket {
+
+        private Timeout head;
+        private Timeout tail;
+
+        private void link(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.previous = tail;
+                tail = timeout;
+            }
+        }
+
+        private void unlink(Timeout timeout) {
+            if (timeout.previous == null) {
+                head = timeout.next;
+            } else {
+                timeout.previous.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.previous;
+            } else {
+                timeout.next.previous = timeout.previous;
+            }
+            timeout.previous = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+
+        private void expire(long tick, long tickNanos, List<ReactionWaiter> expired, List<Timeout> extended) {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                // timeouts further away than one rotation stay until their round comes
+                if (timeout.deadlineTick <= tick) {
+                    unlink(timeout);
+                    if ((timeout.deadline + tickNanos - 1) / tickNanos > tick) {
+                        extended.add(timeout);
+                    } else if (Timeout.STATE.compareAndSet(timeout, Timeout.ACTIVE, Timeout.EXPIRED)) {
+                        expired.add(timeout.waiter);
+                    }
+                }
+                timeout = next;
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package de.kaktushose.discord.reactionwaiter;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/**
+ * A lock-free token bucket. Instead of counting tokens, it only keeps the point in time at which the bucket will be
+ * full again, as done by the generic cell rate algorithm. Taking a token moves that point one interval further, a
+ * token is available as long as that point isn't more than the burst tolerance ahead of now. Thus the whole state is a
+ * single {@code long} that is updated with one CAS and no refill task is needed.
+ *
+ * @author Kaktushose
+ * @version 3.0.0
+ * @since 3.0.0
+ */
+final class TokenBucket {
+
+    private static final AtomicLongFieldUpdater<TokenBucket> FULL_AT = AtomicLongFieldUpdater.newUpdater(TokenBucket.class, "fullAt");
+    private final long interval;
+    private final long capacity;
+    private volatile long fullAt = Long.MIN_VALUE;
+
+    /**
+     * Creates a new bucket that is full.
+     *
+     * @param interval the time in nanoseconds to refill one token
+     * @param capacity the time in nanoseconds to refill the whole bucket
+     */
+    TokenBucket(long interval, long capacity) {
+        this.interval = interval;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Takes a token if one is available.
+     *
+     * @param now the current value of {@link System#nanoTime()}
+     * @return {@code true} if a token was taken
+     */
+    boolean tryAcquire(long now) {
+        while (true) {
+            long current = fullAt;
+            long next = (current == Long.MIN_VALUE || current - now < 0 ? now : current) + interval;
+            if (next - now > capacity) {
+                return false;
+            }
+            if (FULL_AT.compareAndSet(this, current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Whether this bucket is full, i.e. it behaves exactly like a new bucket and can be discarded.
+     *
+     * @param now the current value of {@link System#nanoTime()}
+     * @return {@code true} if this bucket is full
+     */
+    boolean isFull(long now) {
+        long current = fullAt;
+        return current == Long.MIN_VALUE || current - now <= 0;
+    }
+}
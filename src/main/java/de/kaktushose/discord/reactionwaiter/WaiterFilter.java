@@ -0,0 +1,139 @@
+package de.kaktushose.discord.reactionwaiter;
+
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Role;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * The declarative filters of a {@link ReactionWaiter}, compiled into an immutable match plan. Every call that adds a
+ * filter returns a new instance, thus a plan can be read by dispatch without any synchronization.
+ *
+ * <p>The channel and guild are not only checked, the {@link WaiterRegistry} also uses them to index waiters that aren't
+ * bound to a message, so such waiters are never looked at for reactions in other channels or guilds. The remaining
+ * filters are evaluated from the cheapest to the most expensive one: the user IDs are a binary search over a sorted
+ * array, the roles need the cached member and the custom predicate is user code that needs the {@link ReactionEvent}.
+ *
+ * @author Kaktushose
+ * @version 3.0.0
+ * @since 3.0.0
+ */
+final class WaiterFilter {
+
+    static final WaiterFilter NONE = new WaiterFilter(0, 0, null, null, null);
+    private final long channelId;
+    private final long guildId;
+    private final long[] userIds;
+    private final long[] roleIds;
+    private final Predicate<ReactionEvent> predicate;
+
+    private WaiterFilter(long channelId, long guildId, long[] userIds, long[] roleIds, Predicate<ReactionEvent> predicate) {
+        this.channelId = channelId;
+        this.guildId = guildId;
+        this.userIds = userIds;
+        this.roleIds = roleIds;
+        this.predicate = predicate;
+    }
+
+    WaiterFilter withChannel(long channelId) {
+        return new WaiterFilter(channelId, guildId, userIds, roleIds, predicate);
+    }
+
+    WaiterFilter withGuild(long guildId) {
+        return new WaiterFilter(channelId, guildId, userIds, roleIds, predicate);
+    }
+
+    WaiterFilter withUsers(long... userIds) {
+        return new WaiterFilter(channelId, guildId, sorted(userIds), roleIds, predicate);
+    }
+
+    WaiterFilter withRoles(long... roleIds) {
+        return new WaiterFilter(channelId, guildId, userIds, sorted(roleIds), predicate);
+    }
+
+    // multiple predicates must all match
+    WaiterFilter withPredicate(Predicate<ReactionEvent> predicate) {
+        return new WaiterFilter(channelId, guildId, userIds, roleIds, this.predicate == null ? predicate : this.predicate.and(predicate));
+    }
+
+    long getChannelId() {
+        return channelId;
+    }
+
+    long getGuildId() {
+        return guildId;
+    }
+
+    /**
+     * Checks the filters that only need the IDs of the event. Bulk removals have no user, so they pass the user filter.
+     *
+     * @param channelId the id of the channel of the event
+     * @param guildId   the id of the guild of the event
+     * @param userId    the id of the user of the event or {@code 0} for bulk removals
+     * @return {@code true} if the event passes these filters
+     */
+    boolean matches(long channelId, long guildId, long userId) {
+        if (this.channelId != 0 && this.channelId != channelId) {
+            return false;
+        }
+        if (this.guildId != 0 && this.guildId != guildId) {
+            return false;
+        }
+        return userIds == null || userId == 0 || Arrays.binarySearch(userIds, userId) >= 0;
+    }
+
+    /**
+     * Checks the filters that need the {@link ReactionEvent}. This should only be called after
+     * {@link #matches(long, long, long)} passed.
+     *
+     * @param event the event to check
+     * @return {@code true} if the event passes these filters
+     */
+    boolean matches(ReactionEvent event) {
+        if (roleIds != null && event.getUserIdLong() != 0 && !hasRole(event.getMember())) {
+            return false;
+        }
+        if (predicate == null) {
+            return true;
+        }
+        // a failing predicate must not stop the dispatch to the other waiters
+        try {
+            return predicate.test(event);
+        } catch (RuntimeException e) {
+            Thread thread = Thread.currentThread();
+            thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+            return false;
+        }
+    }
+
+    /**
+     * Whether the filters that need the {@link ReactionEvent} are set.
+     *
+     * @return {@code true} if {@link #matches(ReactionEvent)} has to be called
+     */
+    boolean needsEvent() {
+        return roleIds != null || predicate != null;
+    }
+
+    // a member that isn't cached can't be checked and is rejected
+    private boolean hasRole(Member member) {
+        if (member == null) {
+            return false;
+        }
+        List<Role> roles = member.getRoles();
+        for (int i = 0; i < roles.size(); i++) {
+            if (Arrays.binarySearch(roleIds, roles.get(i).getIdLong()) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long[] sorted(long[] ids) {
+        long[] copy = ids.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+}
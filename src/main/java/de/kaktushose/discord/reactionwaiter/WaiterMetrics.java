@@ -0,0 +1,111 @@
+package de.kaktushose.discord.reactionwaiter;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Receives instrumentation callbacks from a {@link ReactionListener}. All methods have empty default implementations,
+ * so implementations only need to override the callbacks they are interested in. The callbacks are invoked on hot
+ * paths, thus implementations must be thread-safe and should return quickly.
+ *
+ * @author Kaktushose
+ * @version 3.0.0
+ * @see MicrometerWaiterMetrics
+ * @see ReactionListener#setMetrics(WaiterMetrics)
+ * @since 3.0.0
+ */
+
+public interface WaiterMetrics {
+
+    /**
+     * A {@link WaiterMetrics} implementation that does nothing. This is the default.
+     */
+    WaiterMetrics NOOP = new WaiterMetrics() {
+    };
+
+    /**
+     * Gets called once when this instance is set for a {@link ReactionListener}. Use this to register gauges, for
+     * example for {@link ReactionListener#getWaiterCount()}.
+     *
+     * @param listener the {@link ReactionListener} that will report to this instance
+     */
+    default void bindTo(@Nonnull ReactionListener listener) {
+    }
+
+    /**
+     * Gets called when a waiter got registered.
+     */
+    default void onRegistered() {
+    }
+
+    /**
+     * Gets called when a waiter got unregistered, no matter if it was stopped, expired or matched a one shot event.
+     */
+    default void onUnregistered() {
+    }
+
+    /**
+     * Gets called when a waiter got unregistered because it expired.
+     */
+    default void onExpired() {
+    }
+
+    /**
+     * Gets called when a waiter got unregistered because it was evicted or rejected by a capacity limit.
+     */
+    default void onEvicted() {
+    }
+
+    /**
+     * Gets called after the pre-filter checked a reaction event. Rejected events can't match any waiter and skip the
+     * waiter index entirely, {@link #onDispatch(long, int)} won't be called for them.
+     *
+     * @param passed {@code true} if the event passed the filter and will be checked against the waiters
+     */
+    default void onPrefilter(boolean passed) {
+    }
+
+    /**
+     * Gets called when a reaction event gets dropped because it exceeded a {@link RateLimit}. Events that exceed the
+     * limit of a waiter are reported once per waiter.
+     */
+    default void onRateLimited() {
+    }
+
+    /**
+     * Gets called after a reaction event was checked against the registered waiters.
+     *
+     * @param nanos   the time it took to find the matching waiters and to dispatch the event to them, including the
+     *                execution time of consumers that run on the JDA event thread
+     * @param matches the amount of waiters that matched the event, {@code 0} if the event matched nothing
+     */
+    default void onDispatch(long nanos, int matches) {
+    }
+
+    /**
+     * Gets called after the consumer of a waiter was executed.
+     *
+     * @param nanos the execution time of the consumer
+     */
+    default void onConsumerExecuted(long nanos) {
+    }
+
+    /**
+     * Gets called when a reaction removal got queued. Removals for a message that is already queued are merged and
+     * don't trigger this callback.
+     */
+    default void onCleanupQueued() {
+    }
+
+    /**
+     * Gets called when a reaction removal completed successfully.
+     */
+    default void onCleanupCompleted() {
+    }
+
+    /**
+     * Gets called when a reaction removal request failed.
+     */
+    default void onCleanupFailed() {
+    }
+
+}
@@ -0,0 +1,136 @@
+package de.kaktushose.discord.reactionwaiter;
+
+import javax.annotation.Nonnull;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The persistent definition of a {@link ReactionWaiter} as it is written to a {@link WaiterStore}. It only consists of
+ * IDs, the emotes, the expiry deadline, the key of the handler and its payload, thus it can be restored without any REST request.
+ *
+ * @author Kaktushose
+ * @version 3.0.0
+ * @since 3.0.0
+ */
+
+public final class WaiterRecord {
+
+    private final long id;
+    private final long guildId;
+    private final long channelId;
+    private final long messageId;
+    private final long userId;
+    private final Set<String> emotes;
+    private final long expiresAt;
+    private final String handlerKey;
+    private final long payload;
+
+    /**
+     * Creates a new record.
+     *
+     * @param id         the id of the record as returned by {@link WaiterStore#nextId()}
+     * @param guildId    the id of the guild or {@code 0}
+     * @param channelId  the id of the channel or {@code 0}
+     * @param messageId  the id of the message or {@code 0}
+     * @param userId     the id of the user or {@code 0}
+     * @param emotes     the emotes the waiter listens for
+     * @param expiresAt  the epoch millisecond at which the waiter expires or {@code 0} if it doesn't expire
+     * @param handlerKey the key of the handler that consumes the events of the waiter
+     * @param payload    the payload that is passed to the handler
+     */
+    public WaiterRecord(long id, long guildId, long channelId, long messageId, long userId, @Nonnull Collection<String> emotes,
+                        long expiresAt, @Nonnull String handlerKey, long payload) {
+        this.id = id;
+        this.guildId = guildId;
+        this.channelId = channelId;
+        this.messageId = messageId;
+        this.userId = userId;
+        this.emotes = Collections.unmodifiableSet(new HashSet<>(emotes));
+        this.expiresAt = expiresAt;
+        this.handlerKey = handlerKey;
+        this.payload = payload;
+    }
+
+    /**
+     * Get the id of this record.
+     *
+     * @return the id of this record
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * Get the id of the guild of the waiter.
+     *
+     * @return the id of the guild or {@code 0} if the waiter isn't bound to a guild
+     */
+    public long getGuildIdLong() {
+        return guildId;
+    }
+
+    /**
+     * Get the id of the channel of the waiter.
+     *
+     * @return the id of the channel or {@code 0} if the waiter isn't bound to a message
+     */
+    public long getChannelIdLong() {
+        return channelId;
+    }
+
+    /**
+     * Get the id of the message of the waiter.
+     *
+     * @return the id of the message or {@code 0} if the waiter isn't bound to a message
+     */
+    public long getMessageIdLong() {
+        return messageId;
+    }
+
+    /**
+     * Get the id of the user of the waiter.
+     *
+     * @return the id of the user or {@code 0} if the waiter accepts all users
+     */
+    public long getUserIdLong() {
+        return userId;
+    }
+
+    /**
+     * Get the emotes the waiter listens for.
+     *
+     * @return an unmodifiable Set of the emotes
+     */
+    public Set<String> getEmotes() {
+        return emotes;
+    }
+
+    /**
+     * Get the point in time at which the waiter expires.
+     *
+     * @return the epoch millisecond at which the waiter expires or {@code 0} if it doesn't expire
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * Get the key of the handler that consumes the events of the waiter.
+     *
+     * @return the key of the handler
+     */
+    public String getHandlerKey() {
+        return handlerKey;
+    }
+
+    /**
+     * Get the payload that is passed to the handler of the waiter.
+     *
+     * @return the payload or {@code 0} if the waiter doesn't use a {@link ReactionHandler}
+     */
+    public long getPayload() {
+        return payload;
+    }
+}
@@ -0,0 +1,516 @@
+package de.kaktushose.discord.reactionwaiter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Holds all active {@link ReactionWaiter}s. The waiters are indexed by the ID of the message they observe and then
+ * by the emote they listen for. Waiters that aren't bound to a message are indexed by the channel or guild they are
+ * filtered by, or by the guild of the member they are bound to, and then by emote. Waiters without any of these are
+ * kept in a separate wildcard bucket, indexed by emote only. This way an incoming reaction only touches the waiters that can actually match it.
+ *
+ * <p>The message index is split into lock striped segments, so registrations for different messages don't contend
+ * with each other and readers only share a read lock with the writers of the same segment. The buckets themselves are
+ * concurrent sets, thus adding and removing a waiter is O(1) and dispatch can iterate them without copying.
+ *
+ * @author Kaktushose
+ * @version 3.0.0
+ * @since 3.0.0
+ */
+final class WaiterRegistry {
+
+    /**
+     * The amount of watched messages the Bloom filter is sized for if nothing else is known.
+     */
+    static final int DEFAULT_EXPECTED_MESSAGES = 4096;
+    private static final int SEGMENTS = 32;
+    // 16 counters per message keep false positives below 1%, more messages only make them more likely
+    private static final int COUNTERS_PER_MESSAGE = 16;
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final Map<String, Set<ReactionWaiter>> wildcardWaiters = new ConcurrentHashMap<>();
+    private final Map<Long, Map<String, Set<ReactionWaiter>>> channelWaiters = new ConcurrentHashMap<>();
+    private final Map<Long, Map<String, Set<ReactionWaiter>>> guildWaiters = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final int filterSize;
+    // allocated with the first message waiter, listeners that only hold filtered waiters never need it
+    private volatile CountingBloomFilter messageFilter;
+    // the channels and guilds the waiters are bound to, so deleting a channel or leaving a guild rarely needs a scan
+    private volatile CountingBloomFilter scopeFilter;
+
+    /**
+     * Creates a new registry whose Bloom filter is sized for {@link #DEFAULT_EXPECTED_MESSAGES} watched messages.
+     */
+    WaiterRegistry() {
+        this(DEFAULT_EXPECTED_MESSAGES);
+    }
+
+    /**
+     * Creates a new registry. The Bloom filter of the watched messages needs one byte per counter and is allocated
+     * once the first waiter for a message gets registered.
+     *
+     * @param expectedMessages the amount of messages that are expected to be watched at the same time
+     * @throws IllegalArgumentException if the amount of expected messages is less than one
+     */
+    WaiterRegistry(int expectedMessages) {
+        if (expectedMessages < 1) {
+            throw new IllegalArgumentException("The amount of expected messages must be at least one!");
+        }
+        this.filterSize = (int) Math.min(1 << 30, (long) expectedMessages * COUNTERS_PER_MESSAGE);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Registers a waiter for all of its emotes.
+     *
+     * @param waiter the waiter to register
+     * @return {@code false} if the waiter was already registered
+     */
+    boolean add(ReactionWaiter waiter) {
+        if (waiter.getEmotes().isEmpty()) {
+            return false;
+        }
+        // an uncontended monitor, only guards against add and remove of the same waiter interleaving
+        synchronized (waiter) {
+            if (!waiter.markRegistered()) {
+                return false;
+            }
+            updateScopes(waiter, true);
+            index(waiter);
+        }
+        size.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Unregisters a waiter.
+     *
+     * @param waiter the waiter to unregister
+     * @return {@code true} if the waiter was registered
+     */
+    boolean remove(ReactionWaiter waiter) {
+        synchronized (waiter) {
+            if (!waiter.markUnregistered()) {
+                return false;
+            }
+            unindex(waiter);
+            updateScopes(waiter, false);
+        }
+        size.decrementAndGet();
+        return true;
+    }
+
+    /**
+     * Registers multiple waiters at once. The waiters are grouped by segment first, so every segment gets locked only
+     * once, no matter how many waiters it receives.
+     *
+     * @param waiters the waiters to register
+     * @return the waiters that weren't registered before
+     */
+    List<ReactionWaiter> addAll(Collection<ReactionWaiter> waiters) {
+        List<ReactionWaiter> added = new ArrayList<>(waiters.size());
+        @SuppressWarnings("unchecked")
+        List<ReactionWaiter>[] bySegment = new List[SEGMENTS];
+        for (ReactionWaiter waiter : waiters) {
+            if (waiter.getEmotes().isEmpty()) {
+                continue;
+            }
+            synchronized (waiter) {
+                if (!waiter.markRegistered()) {
+                    continue;
+                }
+                updateScopes(waiter, true);
+                if (waiter.getMessageIdLong() == 0) {
+                    index(waiter);
+                } else {
+                    int segment = segmentIndexOf(waiter.getMessageIdLong());
+                    if (bySegment[segment] == null) {
+                        bySegment[segment] = new ArrayList<>();
+                    }
+                    bySegment[segment].add(waiter);
+                }
+            }
+            added.add(waiter);
+        }
+        size.addAndGet(added.size());
+        for (int i = 0; i < SEGMENTS; i++) {
+            if (bySegment[i] == null) {
+                continue;
+            }
+            Segment segment = segments[i];
+            segment.writeLock().lock();
+            try {
+                for (ReactionWaiter waiter : bySegment[i]) {
+                    // a waiter that got removed in the meantime found nothing to unindex, so it must not be indexed
+                    if (waiter.isRegistered()) {
+                        index(segment, waiter);
+                    }
+                }
+            } finally {
+                segment.writeLock().unlock();
+            }
+        }
+        return added;
+    }
+
+    private void index(ReactionWaiter waiter) {
+        WaiterFilter filter = waiter.getFilter();
+        if (waiter.getMessageIdLong() == 0 && filter.getChannelId() != 0) {
+            index(channelWaiters, filter.getChannelId(), waiter);
+        } else if (waiter.getMessageIdLong() == 0 && filter.getGuildId() != 0) {
+            index(guildWaiters, filter.getGuildId(), waiter);
+        } else if (waiter.getMessageIdLong() == 0 && waiter.getGuildIdLong() != 0) {
+            // a member only reacts in its own guild, so the waiter doesn't belong into the wildcard bucket
+            index(guildWaiters, waiter.getGuildIdLong(), waiter);
+        } else if (waiter.getMessageIdLong() == 0) {
+            for (String emote : waiter.getEmotes()) {
+                wildcardWaiters.compute(emote, (key, bucket) -> {
+                    if (bucket == null) {
+                        bucket = newBucket();
+                    }
+                    bucket.add(waiter);
+                    return bucket;
+                });
+            }
+        } else {
+            Segment segment = segmentOf(waiter.getMessageIdLong());
+            segment.writeLock().lock();
+            try {
+                index(segment, waiter);
+            } finally {
+                segment.writeLock().unlock();
+            }
+        }
+    }
+
+    // must hold the write lock of the segment
+    private void index(Segment segment, ReactionWaiter waiter) {
+        long messageId = waiter.getMessageIdLong();
+        Map<String, Set<ReactionWaiter>> buckets = segment.waiters.get(messageId);
+        if (buckets == null) {
+            buckets = new ConcurrentHashMap<>(4);
+            segment.waiters.put(messageId, buckets);
+            messageFilter().add(messageId);
+        }
+        for (String emote : waiter.getEmotes()) {
+            buckets.computeIfAbsent(emote, key -> newBucket()).add(waiter);
+        }
+    }
+
+    // the whole scope is updated inside compute, so a concurrent unindex can't drop it while a waiter gets added
+    private static void index(Map<Long, Map<String, Set<ReactionWaiter>>> scopes, long id, ReactionWaiter waiter) {
+        scopes.compute(id, (key, buckets) -> {
+            if (buckets == null) {
+                buckets = new ConcurrentHashMap<>(4);
+            }
+            for (String emote : waiter.getEmotes()) {
+                buckets.computeIfAbsent(emote, k -> newBucket()).add(waiter);
+            }
+            return buckets;
+        });
+    }
+
+    // every id is counted once per waiter, so adding and removing a waiter stay symmetric
+    private void updateScopes(ReactionWaiter waiter, boolean add) {
+        WaiterFilter filter = waiter.getFilter();
+        long[] ids = {waiter.getChannelIdLong(), waiter.getGuildIdLong(), filter.getChannelId(), filter.getGuildId()};
+        CountingBloomFilter scopes = scopeFilter();
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == 0 || isDuplicate(ids, i)) {
+                continue;
+            }
+            if (add) {
+                scopes.add(ids[i]);
+            } else {
+                scopes.remove(ids[i]);
+            }
+        }
+    }
+
+    private static boolean isDuplicate(long[] ids, int index) {
+        for (int i = 0; i < index; i++) {
+            if (ids[i] == ids[index]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void unindex(ReactionWaiter waiter) {
+        WaiterFilter filter = waiter.getFilter();
+        if (waiter.getMessageIdLong() == 0 && filter.getChannelId() != 0) {
+            unindex(channelWaiters, filter.getChannelId(), waiter);
+        } else if (waiter.getMessageIdLong() == 0 && filter.getGuildId() != 0) {
+            unindex(guildWaiters, filter.getGuildId(), waiter);
+        } else if (waiter.getMessageIdLong() == 0 && waiter.getGuildIdLong() != 0) {
+            unindex(guildWaiters, waiter.getGuildIdLong(), waiter);
+        } else if (waiter.getMessageIdLong() == 0) {
+            for (String emote : waiter.getEmotes()) {
+                wildcardWaiters.computeIfPresent(emote, (key, bucket) -> {
+                    bucket.remove(waiter);
+                    return bucket.isEmpty() ? null : bucket;
+                });
+            }
+        } else {
+            long messageId = waiter.getMessageIdLong();
+            Segment segment = segmentOf(messageId);
+            segment.writeLock().lock();
+            try {
+                Map<String, Set<ReactionWaiter>> buckets = segment.waiters.get(messageId);
+                if (buckets != null) {
+                    for (String emote : waiter.getEmotes()) {
+                        Set<ReactionWaiter> bucket = buckets.get(emote);
+                        if (bucket != null && bucket.remove(waiter) && bucket.isEmpty()) {
+                            buckets.remove(emote);
+                        }
+                    }
+                    if (buckets.isEmpty()) {
+                        segment.waiters.remove(messageId);
+                        messageFilter().remove(messageId);
+                    }
+                }
+            } finally {
+                segment.writeLock().unlock();
+            }
+        }
+    }
+
+    private static void unindex(Map<Long, Map<String, Set<ReactionWaiter>>> scopes, long id, ReactionWaiter waiter) {
+        scopes.computeIfPresent(id, (key, buckets) -> {
+            for (String emote : waiter.getEmotes()) {
+                Set<ReactionWaiter> bucket = buckets.get(emote);
+                if (bucket != null && bucket.remove(waiter) && bucket.isEmpty()) {
+                    buckets.remove(emote);
+                }
+            }
+            return buckets.isEmpty() ? null : buckets;
+        });
+    }
+
+    /**
+     * Checks whether a reaction might have a matching waiter without touching the index itself. This only consults a
+     * Bloom filter of the watched messages, the emotes of the wildcard waiters and the channels and guilds of the
+     * filtered waiters, thus it's lock-free. If this returns {@code false}, there definitely is no waiter for the
+     * reaction.
+     *
+     * @param messageId the id of the message the reaction was added to
+     * @param channelId the id of the channel the reaction was added in
+     * @param guildId   the id of the guild the reaction was added in
+     * @param emote     the emote that was added or {@code null} to only check the message
+     * @return {@code false} if no waiter can match the reaction
+     */
+    boolean mightMatch(long messageId, long channelId, long guildId, String emote) {
+        // the filter gets published before the first message is indexed, so a missing filter means no message waiter
+        CountingBloomFilter filter = messageFilter;
+        if (filter != null && filter.mightContain(messageId)) {
+            return true;
+        }
+        if (emote == null) {
+            return false;
+        }
+        // the emptiness checks avoid boxing the IDs as long as no filtered waiter exists
+        return (!wildcardWaiters.isEmpty() && wildcardWaiters.containsKey(emote))
+                || (!channelWaiters.isEmpty() && channelWaiters.containsKey(channelId))
+                || (!guildWaiters.isEmpty() && guildWaiters.containsKey(guildId));
+    }
+
+    /**
+     * Checks whether a waiter might be bound to the given channel or guild, either by its message, its member or a
+     * filter. This only consults a Bloom filter and is lock-free. If this returns {@code false}, there definitely is
+     * no such waiter and a scan of all waiters can be skipped.
+     *
+     * @param id the id of the channel or guild
+     * @return {@code false} if no waiter is bound to the channel or guild
+     */
+    boolean mightBeBoundTo(long id) {
+        CountingBloomFilter filter = scopeFilter;
+        return filter != null && filter.mightContain(id);
+    }
+
+    /**
+     * Gets all waiters that observe the given message and listen for the given emote. The returned set is a live view,
+     * iterating it is weakly consistent.
+     *
+     * @param messageId the id of the message the reaction was added to
+     * @param emote     the emote that was added
+     * @return the matching waiters, never {@code null}
+     */
+    Set<ReactionWaiter> get(long messageId, String emote) {
+        Segment segment = segmentOf(messageId);
+        Map<String, Set<ReactionWaiter>> buckets;
+        segment.readLock().lock();
+        try {
+            buckets = segment.waiters.get(messageId);
+        } finally {
+            segment.readLock().unlock();
+        }
+        if (buckets == null) {
+            return Collections.emptySet();
+        }
+        return buckets.getOrDefault(emote, Collections.emptySet());
+    }
+
+    /**
+     * Gets the buckets of all waiters that observe the given message, one bucket per emote. A waiter that listens for
+     * multiple emotes is contained in multiple buckets. The returned collection is a live view, iterating it is weakly
+     * consistent.
+     *
+     * @param messageId the id of the message
+     * @return the buckets of the message, never {@code null}
+     */
+    Collection<Set<ReactionWaiter>> getAll(long messageId) {
+        Segment segment = segmentOf(messageId);
+        Map<String, Set<ReactionWaiter>> buckets;
+        segment.readLock().lock();
+        try {
+            buckets = segment.waiters.get(messageId);
+        } finally {
+            segment.readLock().unlock();
+        }
+        if (buckets == null) {
+            return Collections.emptySet();
+        }
+        return buckets.values();
+    }
+
+    /**
+     * Gets all waiters that aren't bound to a message and listen for the given emote. The returned set is a live view,
+     * iterating it is weakly consistent.
+     *
+     * @param emote the emote that was added
+     * @return the matching waiters, never {@code null}
+     */
+    Set<ReactionWaiter> getWildcard(String emote) {
+        return wildcardWaiters.getOrDefault(emote, Collections.emptySet());
+    }
+
+    /**
+     * Gets all waiters that aren't bound to a message, are filtered by the given channel and listen for the given
+     * emote. The returned set is a live view, iterating it is weakly consistent.
+     *
+     * @param channelId the id of the channel the reaction was added in
+     * @param emote     the emote that was added
+     * @return the matching waiters, never {@code null}
+     */
+    Set<ReactionWaiter> getByChannel(long channelId, String emote) {
+        return getScoped(channelWaiters, channelId, emote);
+    }
+
+    /**
+     * Gets all waiters that aren't bound to a message, are filtered by the given guild but not by a channel and listen
+     * for the given emote. The returned set is a live view, iterating it is weakly consistent.
+     *
+     * @param guildId the id of the guild the reaction was added in
+     * @param emote   the emote that was added
+     * @return the matching waiters, never {@code null}
+     */
+    Set<ReactionWaiter> getByGuild(long guildId, String emote) {
+        return getScoped(guildWaiters, guildId, emote);
+    }
+
+    private static Set<ReactionWaiter> getScoped(Map<Long, Map<String, Set<ReactionWaiter>>> scopes, long id, String emote) {
+        if (scopes.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Map<String, Set<ReactionWaiter>> buckets = scopes.get(id);
+        if (buckets == null) {
+            return Collections.emptySet();
+        }
+        return buckets.getOrDefault(emote, Collections.emptySet());
+    }
+
+    /**
+     * Collects all registered waiters that match the given predicate. This has to look at every waiter, so it's meant
+     * for rare bulk operations only. A waiter that listens for multiple emotes is contained multiple times.
+     *
+     * @param predicate the predicate to test the waiters with
+     * @return the matching waiters
+     */
+    List<ReactionWaiter> collect(Predicate<ReactionWaiter> predicate) {
+        List<ReactionWaiter> result = new ArrayList<>();
+        Consumer<Set<ReactionWaiter>> collector = bucket -> {
+            for (ReactionWaiter waiter : bucket) {
+                if (predicate.test(waiter)) {
+                    result.add(waiter);
+                }
+            }
+        };
+        for (Segment segment : segments) {
+            segment.readLock().lock();
+            try {
+                segment.waiters.forEach(buckets -> buckets.values().forEach(collector));
+            } finally {
+                segment.readLock().unlock();
+            }
+        }
+        wildcardWaiters.values().forEach(collector);
+        channelWaiters.values().forEach(buckets -> buckets.values().forEach(collector));
+        guildWaiters.values().forEach(buckets -> buckets.values().forEach(collector));
+        return result;
+    }
+
+    /**
+     * Gets the amount of registered waiters.
+     *
+     * @return the amount of registered waiters
+     */
+    int size() {
+        return size.get();
+    }
+
+    private CountingBloomFilter messageFilter() {
+        CountingBloomFilter filter = messageFilter;
+        if (filter != null) {
+            return filter;
+        }
+        synchronized (this) {
+            if (messageFilter == null) {
+                messageFilter = new CountingBloomFilter(filterSize);
+            }
+            return messageFilter;
+        }
+    }
+
+    private CountingBloomFilter scopeFilter() {
+        CountingBloomFilter filter = scopeFilter;
+        if (filter != null) {
+            return filter;
+        }
+        synchronized (this) {
+            if (scopeFilter == null) {
+                // far less channels and guilds than messages are watched at the same time
+                scopeFilter = new CountingBloomFilter(filterSize >>> 2);
+            }
+            return scopeFilter;
+        }
+    }
+
+    private Segment segmentOf(long messageId) {
+        return segments[segmentIndexOf(messageId)];
+    }
+
+    private static int segmentIndexOf(long messageId) {
+        // the lower bits of a snowflake are a per process increment, mix in the timestamp bits
+        return (int) (messageId ^ (messageId >>> 22)) & (SEGMENTS - 1);
+    }
+
+    private static Set<ReactionWaiter> newBucket() {
+        return Collections.newSetFromMap(new ConcurrentHashMap<>(4));
+    }
+
+    private static final class Segment extends ReentrantReadWriteLock {
+
+        private final LongObjectMap<Map<String, Set<ReactionWaiter>>> waiters = new LongObjectMap<>();
+
+    }
+}
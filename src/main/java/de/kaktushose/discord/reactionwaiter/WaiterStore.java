@@ -0,0 +1,59 @@
+package de.kaktushose.discord.reactionwaiter;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.util.function.Consumer;
+
+/**
+ * Persists the definitions of {@link ReactionWaiter}s, so they survive a restart. A waiter gets stored if it was
+ * marked with {@link ReactionWaiter#persist(String)} and is removed from the store again once it gets unregistered.
+ * The stored waiters are restored when the {@link ReactionListener} is attached to a JDA.
+ *
+ * <p>{@link #save(WaiterRecord)} and {@link #remove(long)} are called while waiters get registered and unregistered,
+ * thus they should be cheap. Implementations may buffer them until {@link #flush()} gets called, which the
+ * {@link ReactionListener} does once per second.
+ *
+ * @author Kaktushose
+ * @version 3.0.0
+ * @see FileWaiterStore
+ * @since 3.0.0
+ */
+
+public interface WaiterStore extends Closeable {
+
+    /**
+     * Generates a new id for a {@link WaiterRecord}. The id must be unique within this store and must not be
+     * {@code 0}.
+     *
+     * @return a new record id
+     */
+    long nextId();
+
+    /**
+     * Stores the given record. If a record with the same id already exists, it gets replaced.
+     *
+     * @param record the record to store
+     */
+    void save(@Nonnull WaiterRecord record);
+
+    /**
+     * Removes the record with the given id. Has no effect if no such record exists.
+     *
+     * @param id the id of the record to remove
+     */
+    void remove(long id);
+
+    /**
+     * Passes every stored record to the given consumer.
+     *
+     * @param consumer the consumer to pass the records to
+     */
+    void load(@Nonnull Consumer<WaiterRecord> consumer);
+
+    /**
+     * Writes all buffered changes to the underlying storage.
+     */
+    default void flush() {
+    }
+
+}
@@ -24,10 +24,10 @@
  * <p>
  * This framework is build around the class {@link de.kaktushose.discord.reactionwaiter.ReactionWaiter}.<br>
  * It is used to create special listeners that will wait for reactions to be added. In doing so they will follow the restrictions defined by the constructor used.<br>
- * {@link de.kaktushose.discord.reactionwaiter.ReactionEvent} is a sub class of {@code GuildMessageReactionAddEvent} from JDA
+ * {@link de.kaktushose.discord.reactionwaiter.ReactionEvent} is a lightweight view of the reaction events from JDA
  * and provides some extra utilities.<br>
  * {@link de.kaktushose.discord.reactionwaiter.ReactionListener} implements the {@code onGuildMessageReactionAdd} method from JDA.
- * It reviews all incoming {@code GuildMessageReactionAddEvent}s.<br>
+ * It reviews all incoming {@code GuildMessageReactionAddEvent}s and, for waiters that opt in, the reaction removal events.<br>
  * {@link de.kaktushose.discord.reactionwaiter.EmoteType} is an enum with some emotes that might be frequently used. It can be used instead of the {@code Emote} from JDA.
  */
 package de.kaktushose.discord.reactionwaiter;
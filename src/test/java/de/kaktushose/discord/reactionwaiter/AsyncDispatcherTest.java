@@ -0,0 +1,146 @@
+package de.kaktushose.discord.reactionwaiter;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AsyncDispatcherTest {
+
+    private static final int CAPACITY = 2;
+    private ReactionListener listener;
+    private ExecutorService executor;
+    private ReactionWaiter waiter;
+    private final List<String> delivered = new CopyOnWriteArrayList<>();
+    private final List<String> threads = new CopyOnWriteArrayList<>();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        listener = ReactionListener.builder().build();
+        executor = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "first"));
+        // the first event blocks the only executor thread, so the following ones pile up in the mailbox
+        waiter = new ReactionWaiter(EmoteType.THUMBSUP.unicode).using(listener).onEvent(event -> {
+            delivered.add(event.getEmote());
+            threads.add(Thread.currentThread().getName());
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        release.countDown();
+        executor.shutdownNow();
+        listener.shutdown(false, 1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void dropNewestDiscardsTheOfferedEvent() throws InterruptedException {
+        AsyncDispatcher dispatcher = fill(OverflowPolicy.DROP_NEWEST);
+        dispatcher.dispatch(waiter, event("4"));
+
+        awaitIdle(dispatcher);
+        assertEquals(Arrays.asList("1", "2", "3"), delivered);
+    }
+
+    @Test
+    void dropOldestDiscardsTheHeadOfTheQueue() throws InterruptedException {
+        AsyncDispatcher dispatcher = fill(OverflowPolicy.DROP_OLDEST);
+        dispatcher.dispatch(waiter, event("4"));
+
+        awaitIdle(dispatcher);
+        assertEquals(Arrays.asList("1", "3", "4"), delivered);
+    }
+
+    @Test
+    void blockWaitsForFreeSpace() throws InterruptedException {
+        AsyncDispatcher dispatcher = fill(OverflowPolicy.BLOCK);
+        Thread producer = new Thread(() -> dispatcher.dispatch(waiter, event("4")));
+        producer.start();
+        producer.join(100);
+        assertTrue(producer.isAlive(), "the producer didn't wait for a full mailbox");
+
+        release.countDown();
+        producer.join(5000);
+        awaitIdle(dispatcher);
+        assertEquals(Arrays.asList("1", "2", "3", "4"), delivered);
+    }
+
+    @Test
+    void rejectedEventsAreDeliveredOnTheCallingThread() {
+        release.countDown();
+        executor.shutdown();
+        AsyncDispatcher dispatcher = new AsyncDispatcher(listener, executor, CAPACITY, OverflowPolicy.BLOCK);
+        dispatcher.dispatch(waiter, event("1"));
+
+        assertTrue(dispatcher.isIdle());
+        assertEquals(Arrays.asList("1"), delivered);
+        assertEquals(Thread.currentThread().getName(), threads.get(0));
+    }
+
+    @Test
+    void mailboxFollowsTheReplacedExecutor() throws InterruptedException {
+        // more events than a single drain delivers, so the mailbox has to be submitted again
+        int events = 100;
+        AsyncDispatcher first = new AsyncDispatcher(listener, executor, events, OverflowPolicy.BLOCK);
+        first.dispatch(waiter, event("1"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        for (int i = 2; i < events; i++) {
+            first.dispatch(waiter, event(String.valueOf(i)));
+        }
+        ExecutorService replacement = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "second"));
+        try {
+            AsyncDispatcher second = new AsyncDispatcher(listener, replacement, events, OverflowPolicy.BLOCK);
+            second.dispatch(waiter, event(String.valueOf(events)));
+            assertTrue(first.isIdle());
+
+            awaitIdle(second);
+            assertEquals(events, delivered.size());
+            assertEquals(String.valueOf(events), delivered.get(events - 1));
+            assertEquals("first", threads.get(0));
+            assertEquals("second", threads.get(events - 1));
+        } finally {
+            replacement.shutdownNow();
+        }
+    }
+
+    // occupies the executor with the first event and fills the mailbox with the next ones
+    private AsyncDispatcher fill(OverflowPolicy policy) throws InterruptedException {
+        AsyncDispatcher dispatcher = new AsyncDispatcher(listener, executor, CAPACITY, policy);
+        dispatcher.dispatch(waiter, event("1"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        for (int i = 2; i <= CAPACITY + 1; i++) {
+            dispatcher.dispatch(waiter, event(String.valueOf(i)));
+        }
+        return dispatcher;
+    }
+
+    private void awaitIdle(AsyncDispatcher dispatcher) throws InterruptedException {
+        release.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!dispatcher.isIdle() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertTrue(dispatcher.isIdle());
+    }
+
+    private static ReactionEvent event(String emote) {
+        return new ReactionEvent(null, emote, ReactionAction.ADD);
+    }
+}
@@ -0,0 +1,101 @@
+package de.kaktushose.discord.reactionwaiter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CapacityTrackerTest {
+
+    private static final long GUILD = 1;
+    private final WaiterRegistry registry = new WaiterRegistry(16);
+    private final List<ReactionWaiter> evicted = new ArrayList<>();
+
+    @Test
+    void oldestEvictsInRegistrationOrder() {
+        CapacityTracker tracker = new CapacityTracker(2, 0, 0, EvictionPolicy.OLDEST);
+        ReactionWaiter first = add(tracker, newWaiter(1));
+        ReactionWaiter second = add(tracker, newWaiter(2));
+        tracker.touch(first);
+
+        add(tracker, newWaiter(3));
+        assertEquals(Collections.singletonList(first), evicted);
+        add(tracker, newWaiter(4));
+        assertEquals(second, evicted.get(1));
+    }
+
+    @Test
+    void rejectKeepsTheRegisteredWaiters() {
+        CapacityTracker tracker = new CapacityTracker(1, 0, 0, EvictionPolicy.REJECT);
+        add(tracker, newWaiter(1));
+        ReactionWaiter rejected = newWaiter(2);
+        assertTrue(registry.add(rejected));
+
+        assertFalse(tracker.add(rejected, evicted));
+        assertTrue(evicted.isEmpty());
+
+        assertTrue(registry.remove(rejected));
+    }
+
+    @Test
+    void matchedWaiterGetsASecondChance() {
+        CapacityTracker tracker = new CapacityTracker(3, 0, 0, EvictionPolicy.LEAST_RECENTLY_MATCHED);
+        ReactionWaiter first = add(tracker, newWaiter(1));
+        ReactionWaiter second = add(tracker, newWaiter(2));
+        ReactionWaiter third = add(tracker, newWaiter(3));
+        // every waiter counts as matched once, so a full round clears the flags and the oldest one goes
+        add(tracker, newWaiter(4));
+        assertEquals(Collections.singletonList(first), evicted);
+
+        tracker.touch(second);
+        add(tracker, newWaiter(5));
+        assertEquals(third, evicted.get(1));
+    }
+
+    @Test
+    void newWaiterCountsAsMatched() {
+        CapacityTracker tracker = new CapacityTracker(2, 0, 0, EvictionPolicy.LEAST_RECENTLY_MATCHED);
+        add(tracker, newWaiter(1));
+        ReactionWaiter matched = add(tracker, newWaiter(2));
+        add(tracker, newWaiter(3));
+        tracker.touch(matched);
+
+        // the third waiter never matched, but its registration counts as a match, so the older one goes first
+        add(tracker, newWaiter(4));
+        assertEquals(matched, evicted.get(1));
+    }
+
+    @Test
+    void memberLimitOnlyEvictsWaitersOfTheSameMember() {
+        CapacityTracker tracker = new CapacityTracker(0, 0, 1, EvictionPolicy.OLDEST);
+        ReactionWaiter first = add(tracker, newMemberWaiter(1));
+        ReactionWaiter other = add(tracker, newMemberWaiter(2));
+        assertTrue(evicted.isEmpty());
+
+        add(tracker, newMemberWaiter(1));
+        assertEquals(Collections.singletonList(first), evicted);
+
+        tracker.remove(other);
+        add(tracker, newMemberWaiter(2));
+        assertEquals(1, evicted.size());
+    }
+
+    private ReactionWaiter add(CapacityTracker tracker, ReactionWaiter waiter) {
+        assertTrue(registry.add(waiter));
+        assertTrue(tracker.add(waiter, evicted));
+        return waiter;
+    }
+
+    private static ReactionWaiter newWaiter(long messageId) {
+        return new ReactionWaiter(null, GUILD, 2, messageId, 0, Collections.singletonList(EmoteType.THUMBSUP.unicode));
+    }
+
+    private static ReactionWaiter newMemberWaiter(long userId) {
+        return new ReactionWaiter(null, GUILD, 0, 0, userId, Collections.singletonList(EmoteType.THUMBSUP.unicode));
+    }
+}
@@ -0,0 +1,61 @@
+package de.kaktushose.discord.reactionwaiter;
+
+import net.dv8tion.jda.api.entities.MessageReaction;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmoteKeysTest {
+
+    @Test
+    void customEmotesAreKeyedByTheirId() {
+        String key = EmoteKeys.register("<:pepe:123>");
+
+        assertEquals("123", key);
+        assertTrue(EmoteKeys.isCustom(key));
+        assertSame(key, EmoteKeys.register("<a:pepe:123>"));
+        assertSame(key, EmoteKeys.register("pepe:123"));
+        assertSame(key, EmoteKeys.register(" 123 "));
+        // a renamed emote keeps its key, another emote with the same name gets its own
+        assertSame(key, EmoteKeys.register("<:frog:123>"));
+        assertEquals("456", EmoteKeys.register("<:pepe:456>"));
+    }
+
+    @Test
+    void unicodeEmotesAreTheirOwnKey() {
+        String key = EmoteKeys.register(EmoteType.THUMBSUP.unicode);
+
+        assertEquals(EmoteType.THUMBSUP.unicode, key);
+        assertFalse(EmoteKeys.isCustom(key));
+        // keycaps start with a digit, but aren't custom emotes
+        assertFalse(EmoteKeys.isCustom(EmoteKeys.register(EmoteType.ONE.unicode)));
+    }
+
+    @Test
+    void keysAreInterned() {
+        String key = EmoteKeys.register(EmoteType.THUMBSDOWN.unicode);
+        String copy = new String(EmoteType.THUMBSDOWN.unicode.toCharArray());
+        assertNotSame(key, copy);
+
+        assertSame(key, EmoteKeys.register(copy));
+        assertSame(key, EmoteKeys.lookup(MessageReaction.ReactionEmote.fromUnicode(copy, null)));
+    }
+
+    @Test
+    void unknownEmotesAreNotFound() {
+        assertNull(EmoteKeys.lookup(MessageReaction.ReactionEmote.fromUnicode("🧌", null)));
+    }
+
+    @Test
+    void namesWithoutIdAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> EmoteKeys.register("pepe"));
+        assertThrows(IllegalArgumentException.class, () -> EmoteKeys.register("<:pepe:>"));
+        assertThrows(IllegalArgumentException.class, () -> EmoteKeys.register(""));
+    }
+}
@@ -0,0 +1,129 @@
+package de.kaktushose.discord.reactionwaiter;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileWaiterStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recordsSurviveAReopen() throws IOException {
+        Path path = dir.resolve("waiters.bin");
+        // longer than writeUTF could handle
+        char[] chars = new char[70_000];
+        Arrays.fill(chars, 'k');
+        String longKey = new String(chars);
+        WaiterRecord kept = newRecord(1, longKey, EmoteType.THUMBSUP.unicode, "pepe:123");
+        try (FileWaiterStore store = new FileWaiterStore(path)) {
+            store.save(newRecord(2, "role-menu", EmoteType.THUMBSDOWN.unicode));
+            store.save(kept);
+            store.remove(2);
+            store.flush();
+        }
+
+        try (FileWaiterStore store = new FileWaiterStore(path)) {
+            List<WaiterRecord> records = load(store);
+            assertEquals(1, records.size());
+            assertRecord(kept, records.get(0));
+            assertTrue(store.nextId() > 2, "an id of a stored record got reused");
+        }
+    }
+
+    @Test
+    void truncatedRecordIsIgnored() throws IOException {
+        Path path = dir.resolve("waiters.bin");
+        WaiterRecord complete = newRecord(1, "role-menu", EmoteType.THUMBSUP.unicode);
+        try (FileWaiterStore store = new FileWaiterStore(path)) {
+            store.save(complete);
+            store.save(newRecord(2, "role-menu", EmoteType.THUMBSDOWN.unicode));
+            store.flush();
+        }
+        // cut the second record off in the middle, as a crash during a write would
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 5);
+        }
+
+        try (FileWaiterStore store = new FileWaiterStore(path)) {
+            List<WaiterRecord> records = load(store);
+            assertEquals(1, records.size());
+            assertRecord(complete, records.get(0));
+        }
+        try (FileWaiterStore store = new FileWaiterStore(path)) {
+            assertEquals(1, load(store).size());
+        }
+    }
+
+    @Test
+    void flushCompactsTheFile() throws IOException {
+        Path path = dir.resolve("waiters.bin");
+        try (FileWaiterStore store = new FileWaiterStore(path)) {
+            store.save(newRecord(1, "role-menu", EmoteType.THUMBSUP.unicode));
+            store.flush();
+            long size = Files.size(path);
+            for (int i = 0; i < 2000; i++) {
+                store.save(newRecord(2, "counter-" + i, EmoteType.THUMBSDOWN.unicode));
+            }
+            store.flush();
+            assertTrue(Files.size(path) < 3 * size, "the replaced records weren't compacted");
+
+            store.save(newRecord(3, "role-menu", EmoteType.ONE.unicode));
+            store.remove(1);
+            store.flush();
+        }
+
+        try (FileWaiterStore store = new FileWaiterStore(path)) {
+            List<WaiterRecord> records = load(store);
+            assertEquals(2, records.size());
+            records.sort((first, second) -> Long.compare(first.getId(), second.getId()));
+            assertEquals("counter-1999", records.get(0).getHandlerKey());
+            assertEquals(3, records.get(1).getId());
+        }
+    }
+
+    @Test
+    void rejectsForeignFiles() throws IOException {
+        Path path = dir.resolve("waiters.bin");
+        Files.write(path, "not a waiter store".getBytes(StandardCharsets.UTF_8));
+
+        assertThrows(IOException.class, () -> new FileWaiterStore(path));
+    }
+
+    private static List<WaiterRecord> load(WaiterStore store) {
+        List<WaiterRecord> records = new ArrayList<>();
+        store.load(records::add);
+        return records;
+    }
+
+    private static WaiterRecord newRecord(long id, String handlerKey, String... emotes) {
+        return new WaiterRecord(id, 10, 20, 30 + id, 0, Arrays.asList(emotes), 1_000_000L * id, handlerKey, id * 7);
+    }
+
+    private static void assertRecord(WaiterRecord expected, WaiterRecord actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getGuildIdLong(), actual.getGuildIdLong());
+        assertEquals(expected.getChannelIdLong(), actual.getChannelIdLong());
+        assertEquals(expected.getMessageIdLong(), actual.getMessageIdLong());
+        assertEquals(expected.getUserIdLong(), actual.getUserIdLong());
+        assertEquals(expected.getEmotes(), actual.getEmotes());
+        assertEquals(expected.getExpiresAt(), actual.getExpiresAt());
+        assertEquals(expected.getHandlerKey(), actual.getHandlerKey());
+        assertEquals(expected.getPayload(), actual.getPayload());
+    }
+}
@@ -0,0 +1,57 @@
+package de.kaktushose.discord.reactionwaiter;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class MicrometerWaiterMetricsTest {
+
+    private static final String LIVE = "reactionwaiter.waiters.live";
+
+    @Test
+    void sharedInstanceSumsAllListeners() throws InterruptedException {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        MicrometerWaiterMetrics metrics = new MicrometerWaiterMetrics(registry);
+        ReactionListener first = ReactionListener.builder().setMetrics(metrics).build();
+        ReactionListener second = ReactionListener.builder().setMetrics(metrics).build();
+        try {
+            register(first);
+            register(second);
+            register(second);
+            assertEquals(3, registry.get(LIVE).gauge().value());
+        } finally {
+            first.shutdown(false, 1, TimeUnit.SECONDS);
+            second.shutdown(false, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    void taggedInstancesReportEveryListener() throws InterruptedException {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        ReactionListener first = ReactionListener.builder()
+                .setMetrics(new MicrometerWaiterMetrics(registry, "shard", "0"))
+                .build();
+        ReactionListener second = ReactionListener.builder()
+                .setMetrics(new MicrometerWaiterMetrics(registry, "shard", "1"))
+                .build();
+        try {
+            register(first);
+            register(second);
+            register(second);
+            assertEquals(1, registry.get(LIVE).tags("shard", "0").gauge().value());
+            assertEquals(2, registry.get(LIVE).tags("shard", "1").gauge().value());
+        } finally {
+            first.shutdown(false, 1, TimeUnit.SECONDS);
+            second.shutdown(false, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    private static void register(ReactionListener listener) {
+        new ReactionWaiter(EmoteType.THUMBSUP.unicode).using(listener).onEvent(event -> {
+        });
+    }
+}
@@ -0,0 +1,171 @@
+package de.kaktushose.discord.reactionwaiter;
+
+import net.dv8tion.jda.api.JDA;
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.Message;
+import net.dv8tion.jda.api.entities.MessageReaction;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.api.entities.User;
+import net.dv8tion.jda.api.events.message.guild.react.GuildMessageReactionAddEvent;
+import net.dv8tion.jda.api.events.message.guild.react.GuildMessageReactionRemoveAllEvent;
+import net.dv8tion.jda.api.events.message.guild.react.GuildMessageReactionRemoveEvent;
+import net.dv8tion.jda.api.requests.RestAction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReactionPollTest {
+
+    private static final long GUILD_ID = 1;
+    private static final long CHANNEL_ID = 2;
+    private static final long MESSAGE_ID = 3;
+    private static final long USER_ID = 4;
+    private static final String ONE = EmoteType.ONE.unicode;
+    private static final String TWO = EmoteType.TWO.unicode;
+    // the reactions the poll removed, as emote per call
+    private final List<String> removed = new CopyOnWriteArrayList<>();
+    private final JDA jda = stub(JDA.class, 0);
+    private final Guild guild = stub(Guild.class, GUILD_ID);
+    private final TextChannel channel = stub(TextChannel.class, CHANNEL_ID);
+    private final User user = stub(User.class, USER_ID);
+    private final Member member = stub(Member.class, USER_ID);
+    private ReactionListener listener;
+    private ReactionPoll poll;
+
+    @BeforeEach
+    void setUp() {
+        listener = ReactionListener.builder().setRemoveReactions(false).build();
+        poll = new ReactionPoll(stub(Message.class, MESSAGE_ID), ONE, TWO).using(listener);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        listener.shutdown(false, 1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void singleChoiceSwitchesTheVote() {
+        poll.setSingleChoice(true).start();
+
+        add(ONE);
+        add(ONE);
+        assertEquals(1, poll.getCount(ONE));
+        add(TWO);
+        assertEquals(0, poll.getCount(ONE));
+        assertEquals(1, poll.getCount(TWO));
+        assertEquals(Collections.singleton(TWO), poll.getVotes(USER_ID));
+        assertEquals(Collections.singletonList(ONE), removed);
+
+        // the removal of the previous reaction arrives after the switch and must not withdraw the new vote
+        remove(ONE);
+        assertEquals(0, poll.getCount(ONE));
+        assertEquals(1, poll.getCount(TWO));
+        assertEquals(1, poll.getVoterCount());
+
+        remove(TWO);
+        assertEquals(0, poll.getCount(TWO));
+        assertEquals(0, poll.getVoterCount());
+        assertTrue(poll.getVotes(USER_ID).isEmpty());
+    }
+
+    @Test
+    void multipleChoiceCountsEveryOption() {
+        poll.start();
+
+        add(ONE);
+        add(TWO);
+        add(TWO);
+        assertEquals(1, poll.getCount(ONE));
+        assertEquals(1, poll.getCount(TWO));
+        assertEquals(new HashSet<>(Arrays.asList(ONE, TWO)), poll.getVotes(USER_ID));
+        assertTrue(removed.isEmpty());
+
+        remove(ONE);
+        assertEquals(0, poll.getCount(ONE));
+        assertEquals(Collections.singleton(TWO), poll.getVotes(USER_ID));
+        assertEquals(1, poll.getVoterCount());
+    }
+
+    @Test
+    void removingAllReactionsResetsThePoll() {
+        poll.setSingleChoice(true).start();
+        add(TWO);
+
+        listener.onGuildMessageReactionRemoveAll(new GuildMessageReactionRemoveAllEvent(jda, 0, MESSAGE_ID, channel));
+        assertEquals(0, poll.getCount(TWO));
+        assertEquals(0, poll.getVoterCount());
+        // the poll keeps counting afterwards
+        add(ONE);
+        assertEquals(1, poll.getCount(ONE));
+    }
+
+    private void add(String emote) {
+        listener.onGuildMessageReactionAdd(new GuildMessageReactionAddEvent(jda, 0, member, reaction(emote)));
+    }
+
+    private void remove(String emote) {
+        listener.onGuildMessageReactionRemove(new GuildMessageReactionRemoveEvent(jda, 0, member, reaction(emote), USER_ID));
+    }
+
+    private MessageReaction reaction(String emote) {
+        return new MessageReaction(channel, MessageReaction.ReactionEmote.fromUnicode(emote, jda), MESSAGE_ID, false, 1);
+    }
+
+    // offline stand-ins like the stubs of the benchmarks, removed reactions are recorded
+    @SuppressWarnings("unchecked")
+    private <T> T stub(Class<T> type, long id) {
+        return (T) Proxy.newProxyInstance(ReactionPollTest.class.getClassLoader(), new Class[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getIdLong":
+                    return id;
+                case "getId":
+                    return Long.toUnsignedString(id);
+                case "getJDA":
+                    return jda;
+                case "getUser":
+                    return user;
+                case "getGuild":
+                case "getGuildById":
+                    return guild;
+                case "getChannel":
+                case "getTextChannel":
+                case "getTextChannelById":
+                    return channel;
+                case "removeReactionById":
+                    removed.add(String.valueOf(args[1]));
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            if (RestAction.class.isAssignableFrom(method.getReturnType())) {
+                return stub(method.getReturnType(), 0);
+            }
+            if (method.getReturnType() == long.class) {
+                return 0L;
+            }
+            if (method.getReturnType() == int.class) {
+                return 0;
+            }
+            if (method.getReturnType() == boolean.class) {
+                return false;
+            }
+            return null;
+        });
+    }
+}
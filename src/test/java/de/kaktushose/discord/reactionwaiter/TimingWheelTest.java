@@ -0,0 +1,100 @@
+package de.kaktushose.discord.reactionwaiter;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+
+    private static final long TICK = 10;
+    private ScheduledExecutorService scheduler;
+    private TimingWheel timingWheel;
+    private Queue<ReactionWaiter> expired;
+    private CountDownLatch expiry;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        expired = new ConcurrentLinkedQueue<>();
+        expiry = new CountDownLatch(1);
+        timingWheel = new TimingWheel(scheduler, TICK, TimeUnit.MILLISECONDS, 8, waiter -> {
+            expired.add(waiter);
+            expiry.countDown();
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        timingWheel.stop();
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void expiresAfterTheDeadline() throws InterruptedException {
+        ReactionWaiter waiter = newWaiter();
+        long start = System.nanoTime();
+        // more than one rotation of the wheel away
+        TimingWheel.Timeout timeout = timingWheel.schedule(waiter, timingWheel.deadlineOf(150, TimeUnit.MILLISECONDS));
+
+        assertTrue(expiry.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(150));
+        assertFalse(timeout.isActive());
+        assertFalse(timeout.cancel());
+        assertEquals(waiter, expired.poll());
+        assertTrue(expired.isEmpty());
+    }
+
+    @Test
+    void cancelledTimeoutNeverExpires() throws InterruptedException {
+        TimingWheel.Timeout timeout = timingWheel.schedule(newWaiter(), timingWheel.deadlineOf(2 * TICK, TimeUnit.MILLISECONDS));
+
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertFalse(timeout.isActive());
+        assertFalse(expiry.await(20 * TICK, TimeUnit.MILLISECONDS));
+        assertTrue(expired.isEmpty());
+    }
+
+    @Test
+    void extendedTimeoutExpiresAtTheNewDeadline() throws InterruptedException {
+        ReactionWaiter waiter = newWaiter();
+        long start = System.nanoTime();
+        TimingWheel.Timeout timeout = timingWheel.schedule(waiter, timingWheel.deadlineOf(3 * TICK, TimeUnit.MILLISECONDS));
+        long deadline = timingWheel.deadlineOf(300, TimeUnit.MILLISECONDS);
+        timeout.extend(deadline);
+        // an earlier deadline never shortens the timeout
+        timeout.extend(timingWheel.deadlineOf(TICK, TimeUnit.MILLISECONDS));
+        assertEquals(deadline, timeout.getDeadline());
+
+        assertTrue(expiry.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(300));
+        assertFalse(timeout.isActive());
+        assertTrue(expired.contains(waiter));
+    }
+
+    @Test
+    void extendingAnExpiredTimeoutHasNoEffect() throws InterruptedException {
+        TimingWheel.Timeout timeout = timingWheel.schedule(newWaiter(), timingWheel.deadlineOf(TICK, TimeUnit.MILLISECONDS));
+        assertTrue(expiry.await(5, TimeUnit.SECONDS));
+
+        long deadline = timeout.getDeadline();
+        timeout.extend(timingWheel.deadlineOf(1, TimeUnit.MINUTES));
+        assertEquals(deadline, timeout.getDeadline());
+    }
+
+    private static ReactionWaiter newWaiter() {
+        return new ReactionWaiter(null, 0, 0, 0, 0, Collections.singletonList(EmoteType.THUMBSUP.unicode));
+    }
+}
@@ -0,0 +1,101 @@
+package de.kaktushose.discord.reactionwaiter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void allowsABurstOfAllPermits() {
+        TokenBucket bucket = new RateLimit(3, 3, TimeUnit.SECONDS).newBucket();
+        long now = 42;
+
+        assertTrue(bucket.isFull(now));
+        assertTrue(bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now));
+        assertFalse(bucket.tryAcquire(now));
+        assertFalse(bucket.isFull(now));
+    }
+
+    @Test
+    void refillsOneTokenPerInterval() {
+        TokenBucket bucket = new RateLimit(3, 3, TimeUnit.SECONDS).newBucket();
+        long now = 42;
+        for (int i = 0; i < 3; i++) {
+            bucket.tryAcquire(now);
+        }
+
+        assertFalse(bucket.tryAcquire(now + SECOND - 1));
+        assertTrue(bucket.tryAcquire(now + SECOND));
+        assertFalse(bucket.tryAcquire(now + SECOND));
+
+        assertFalse(bucket.isFull(now + 4 * SECOND - 1));
+        assertTrue(bucket.isFull(now + 4 * SECOND));
+        // an idle bucket doesn't save up more than its capacity
+        long later = now + 60 * SECOND;
+        for (int i = 0; i < 3; i++) {
+            assertTrue(bucket.tryAcquire(later));
+        }
+        assertFalse(bucket.tryAcquire(later));
+    }
+
+    @Test
+    void survivesTheOverflowOfNanoTime() {
+        TokenBucket bucket = new RateLimit(2, 2, TimeUnit.SECONDS).newBucket();
+        long now = Long.MAX_VALUE - SECOND / 2;
+
+        assertTrue(bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now));
+        assertFalse(bucket.tryAcquire(now));
+        assertTrue(bucket.tryAcquire(now + SECOND));
+        assertTrue(bucket.isFull(now + 3 * SECOND));
+    }
+
+    @Test
+    void concurrentCallersNeverExceedThePermits() throws Exception {
+        int permits = 1000;
+        TokenBucket bucket = new RateLimit(permits, 1, TimeUnit.HOURS).newBucket();
+        long now = System.nanoTime();
+        AtomicInteger acquired = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                futures.add(executor.submit(() -> {
+                    for (int j = 0; j < permits; j++) {
+                        if (bucket.tryAcquire(now)) {
+                            acquired.incrementAndGet();
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(permits, acquired.get());
+    }
+
+    @Test
+    void rejectsInvalidLimits() {
+        assertThrows(IllegalArgumentException.class, () -> new RateLimit(0, 1, TimeUnit.SECONDS));
+        assertThrows(IllegalArgumentException.class, () -> new RateLimit(1, 0, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,151 @@
+package de.kaktushose.discord.reactionwaiter;
+
+import net.dv8tion.jda.api.entities.Guild;
+import net.dv8tion.jda.api.entities.Member;
+import net.dv8tion.jda.api.entities.MessageReaction;
+import net.dv8tion.jda.api.entities.Role;
+import net.dv8tion.jda.api.entities.TextChannel;
+import net.dv8tion.jda.api.events.message.guild.react.GuildMessageReactionRemoveEvent;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WaiterFilterTest {
+
+    private static final long GUILD = 1;
+    private static final long CHANNEL = 2;
+    private static final long USER = 3;
+    private static final long ROLE = 4;
+
+    @Test
+    void idFiltersDontNeedTheEvent() {
+        WaiterFilter filter = WaiterFilter.NONE.withChannel(CHANNEL).withGuild(GUILD).withUsers(USER + 2, USER);
+
+        assertFalse(filter.needsEvent());
+        assertTrue(filter.matches(CHANNEL, GUILD, USER));
+        assertFalse(filter.matches(CHANNEL + 1, GUILD, USER));
+        assertFalse(filter.matches(CHANNEL, GUILD + 1, USER));
+        assertFalse(filter.matches(CHANNEL, GUILD, USER + 1));
+        // bulk removals have no user
+        assertTrue(filter.matches(CHANNEL, GUILD, 0));
+    }
+
+    @Test
+    void filtersAreImmutable() {
+        WaiterFilter filter = WaiterFilter.NONE.withChannel(CHANNEL);
+
+        assertEquals(0, WaiterFilter.NONE.getChannelId());
+        assertEquals(CHANNEL, filter.getChannelId());
+        assertEquals(CHANNEL, filter.withGuild(GUILD).getChannelId());
+        assertEquals(0, filter.getGuildId());
+    }
+
+    @Test
+    void predicateRunsAfterTheRoles() {
+        AtomicInteger tested = new AtomicInteger();
+        WaiterFilter filter = WaiterFilter.NONE.withRoles(ROLE + 1, ROLE).withPredicate(event -> {
+            tested.incrementAndGet();
+            return true;
+        });
+        assertTrue(filter.needsEvent());
+
+        // a member that isn't cached can't have the role
+        assertFalse(filter.matches(event(null)));
+        assertFalse(filter.matches(event(member())));
+        assertEquals(0, tested.get());
+
+        assertTrue(filter.matches(event(member(ROLE + 2, ROLE))));
+        assertEquals(1, tested.get());
+    }
+
+    @Test
+    void bulkRemovalsSkipTheRoles() {
+        WaiterFilter filter = WaiterFilter.NONE.withRoles(ROLE);
+
+        assertTrue(filter.matches(new ReactionEvent(null, EmoteType.THUMBSUP.unicode, ReactionAction.REMOVE_ALL)));
+    }
+
+    @Test
+    void predicatesMustAllMatch() {
+        List<String> calls = new ArrayList<>();
+        WaiterFilter filter = WaiterFilter.NONE
+                .withPredicate(event -> calls.add("first"))
+                .withPredicate(event -> {
+                    calls.add("second");
+                    return false;
+                });
+
+        assertFalse(filter.matches(event(member())));
+        assertEquals(Arrays.asList("first", "second"), calls);
+    }
+
+    @Test
+    void failingPredicateRejectsAndReports() {
+        List<Throwable> reported = new ArrayList<>();
+        WaiterFilter filter = WaiterFilter.NONE.withPredicate(event -> {
+            throw new IllegalStateException("broken");
+        });
+        Thread thread = Thread.currentThread();
+        thread.setUncaughtExceptionHandler((t, e) -> reported.add(e));
+        try {
+            assertFalse(filter.matches(event(member())));
+        } finally {
+            thread.setUncaughtExceptionHandler(null);
+        }
+        assertEquals(1, reported.size());
+        assertEquals("broken", reported.get(0).getMessage());
+    }
+
+    private static ReactionEvent event(Member member) {
+        TextChannel channel = stub(TextChannel.class, CHANNEL, stub(Guild.class, GUILD, null));
+        MessageReaction reaction = new MessageReaction(channel, MessageReaction.ReactionEmote.fromUnicode(EmoteType.THUMBSUP.unicode, null), 5, false, 1);
+        return new ReactionEvent(new GuildMessageReactionRemoveEvent(null, 0, member, reaction, USER), EmoteType.THUMBSUP.unicode, ReactionAction.REMOVE);
+    }
+
+    private static Member member(long... roleIds) {
+        List<Role> roles = new ArrayList<>();
+        for (long roleId : roleIds) {
+            roles.add(stub(Role.class, roleId, null));
+        }
+        return stub(Member.class, USER, Collections.unmodifiableList(roles));
+    }
+
+    // answers the id and the method the filter needs, like the stubs of the benchmarks
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, long id, Object value) {
+        return (T) Proxy.newProxyInstance(WaiterFilterTest.class.getClassLoader(), new Class[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getIdLong":
+                    return id;
+                case "getRoles":
+                case "getGuild":
+                    return value;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            if (method.getReturnType() == long.class) {
+                return 0L;
+            }
+            if (method.getReturnType() == int.class) {
+                return 0;
+            }
+            if (method.getReturnType() == boolean.class) {
+                return false;
+            }
+            return null;
+        });
+    }
+}
@@ -0,0 +1,186 @@
+package de.kaktushose.discord.reactionwaiter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WaiterRegistryTest {
+
+    private static final int WRITERS = 4;
+    private static final int READERS = 4;
+    private static final int ROUNDS = 20_000;
+    private static final int MESSAGES = 64;
+    private static final String EMOTE = EmoteType.THUMBSUP.unicode;
+    private static final String OTHER = EmoteType.THUMBSDOWN.unicode;
+    private static final long GUILD = 1;
+
+    @Test
+    void concurrentAddRemoveDispatch() throws Exception {
+        WaiterRegistry registry = new WaiterRegistry();
+        // every removal gets a timestamp once it completed, a lookup that started later must not see the waiter
+        AtomicLong clock = new AtomicLong();
+        Map<ReactionWaiter, Long> removedAt = new ConcurrentHashMap<>();
+        AtomicInteger live = new AtomicInteger();
+        AtomicBoolean writing = new AtomicBoolean(true);
+        Queue<String> failures = new ConcurrentLinkedQueue<>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS + READERS);
+        List<Future<?>> writers = new ArrayList<>();
+        List<Future<?>> readers = new ArrayList<>();
+        for (int i = 0; i < WRITERS; i++) {
+            long seed = i;
+            writers.add(executor.submit(() -> write(registry, new Random(seed), clock, removedAt, live, failures)));
+        }
+        for (int i = 0; i < READERS; i++) {
+            long seed = WRITERS + i;
+            readers.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                while (writing.get()) {
+                    dispatch(registry, random, clock, removedAt, failures);
+                }
+            }));
+        }
+        try {
+            for (Future<?> writer : writers) {
+                writer.get(1, TimeUnit.MINUTES);
+            }
+            writing.set(false);
+            for (Future<?> reader : readers) {
+                reader.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertTrue(failures.isEmpty(), String.valueOf(failures.peek()));
+        assertEquals(live.get(), registry.size());
+        Set<ReactionWaiter> remaining = Collections.newSetFromMap(new IdentityHashMap<>());
+        remaining.addAll(registry.collect(waiter -> true));
+        assertEquals(registry.size(), remaining.size());
+        for (ReactionWaiter waiter : remaining) {
+            assertTrue(waiter.isRegistered());
+            assertFalse(removedAt.containsKey(waiter), "a removed waiter is still indexed");
+        }
+
+        // once everything is removed, the index and the pre-filter are empty again
+        for (ReactionWaiter waiter : remaining) {
+            assertTrue(registry.remove(waiter));
+        }
+        assertEquals(0, registry.size());
+        for (long messageId = 1; messageId <= MESSAGES; messageId++) {
+            assertTrue(registry.getAll(messageId).isEmpty());
+            assertFalse(registry.mightMatch(messageId, 0, 0, null));
+        }
+        assertTrue(registry.getWildcard(EMOTE).isEmpty());
+        assertTrue(registry.getByGuild(GUILD, EMOTE).isEmpty());
+    }
+
+    @Test
+    void memberWaitersAreIndexedByTheirGuild() {
+        WaiterRegistry registry = new WaiterRegistry(16);
+        ReactionWaiter member = new ReactionWaiter(null, GUILD, 0, 0, 9, Collections.singletonList(EMOTE));
+        assertTrue(registry.add(member));
+        assertTrue(registry.getWildcard(EMOTE).isEmpty());
+        assertTrue(registry.getByGuild(GUILD, EMOTE).contains(member));
+        assertFalse(registry.mightMatch(1, 2, GUILD + 1, EMOTE));
+        assertTrue(registry.mightMatch(1, 2, GUILD, EMOTE));
+        assertTrue(registry.remove(member));
+        assertTrue(registry.getByGuild(GUILD, EMOTE).isEmpty());
+    }
+
+    @Test
+    void scopesAreReleasedWithTheirWaiters() {
+        WaiterRegistry registry = new WaiterRegistry(16);
+        assertFalse(registry.mightBeBoundTo(7));
+        ReactionWaiter first = new ReactionWaiter(null, 8, 7, 1, 0, Collections.singletonList(EMOTE));
+        ReactionWaiter second = new ReactionWaiter(null, 8, 7, 0, 0, Collections.singletonList(EMOTE)).inChannel(7);
+        assertTrue(registry.add(first));
+        assertTrue(registry.add(second));
+        assertTrue(registry.mightBeBoundTo(7));
+        assertTrue(registry.mightBeBoundTo(8));
+
+        assertTrue(registry.remove(first));
+        assertTrue(registry.mightBeBoundTo(7));
+        assertTrue(registry.remove(second));
+        assertFalse(registry.mightBeBoundTo(7));
+        assertFalse(registry.mightBeBoundTo(8));
+    }
+
+    private static void write(WaiterRegistry registry, Random random, AtomicLong clock, Map<ReactionWaiter, Long> removedAt,
+                              AtomicInteger live, Queue<String> failures) {
+        List<ReactionWaiter> own = new ArrayList<>();
+        for (int i = 0; i < ROUNDS; i++) {
+            if (!own.isEmpty() && random.nextInt(3) == 0) {
+                ReactionWaiter waiter = own.remove(random.nextInt(own.size()));
+                if (!registry.remove(waiter)) {
+                    failures.add("a registered waiter couldn't be removed");
+                }
+                live.decrementAndGet();
+                removedAt.put(waiter, clock.incrementAndGet());
+            } else if (random.nextBoolean()) {
+                ReactionWaiter waiter = newWaiter(random);
+                if (!registry.add(waiter)) {
+                    failures.add("a new waiter couldn't be added");
+                }
+                live.incrementAndGet();
+                own.add(waiter);
+            } else {
+                List<ReactionWaiter> batch = Arrays.asList(newWaiter(random), newWaiter(random), newWaiter(random));
+                if (registry.addAll(batch).size() != batch.size()) {
+                    failures.add("new waiters couldn't be added");
+                }
+                live.addAndGet(batch.size());
+                own.addAll(batch);
+            }
+        }
+    }
+
+    private static void dispatch(WaiterRegistry registry, Random random, AtomicLong clock, Map<ReactionWaiter, Long> removedAt,
+                                 Queue<String> failures) {
+        long messageId = 1 + random.nextInt(MESSAGES);
+        long start = clock.get();
+        check(registry.get(messageId, EMOTE), start, removedAt, failures);
+        check(registry.getWildcard(EMOTE), start, removedAt, failures);
+        check(registry.getByGuild(GUILD, EMOTE), start, removedAt, failures);
+        if (registry.size() < 0) {
+            failures.add("negative size " + registry.size());
+        }
+    }
+
+    private static void check(Set<ReactionWaiter> bucket, long start, Map<ReactionWaiter, Long> removedAt, Queue<String> failures) {
+        for (ReactionWaiter waiter : bucket) {
+            Long removed = removedAt.get(waiter);
+            if (removed != null && removed <= start) {
+                failures.add("a waiter that was removed before the lookup started got delivered to");
+            }
+        }
+    }
+
+    // a sixth of the waiters isn't bound to a message and is indexed by its guild, half of them listen for two emotes
+    private static ReactionWaiter newWaiter(Random random) {
+        long messageId = random.nextInt(6) == 0 ? 0 : 1 + random.nextInt(MESSAGES);
+        List<String> emotes = random.nextBoolean() ? Collections.singletonList(EMOTE) : Arrays.asList(EMOTE, OTHER);
+        return new ReactionWaiter(null, GUILD, 2, messageId, 0, emotes);
+    }
+}